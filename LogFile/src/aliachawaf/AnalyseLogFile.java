@@ -30,13 +30,30 @@ public class AnalyseLogFile {
 
 		// create list of regular expressions
 		ListRegexp listRegexp = new ListRegexp();
+		listRegexp.setRegexEngine(jsonConfig.getString("regexEngine", "java"));
+		listRegexp.setMatchTimeout(jsonConfig.getInt("matchTimeoutMs", 0));
+		listRegexp.setPrefilter(jsonConfig.getBoolean("prefilter", false));
+		listRegexp.setIntrinsics(jsonConfig.getBoolean("intrinsics", false));
+		listRegexp.setLiteralSets(jsonConfig.getBoolean("literalSets", false));
 		listRegexp.setListRegexp(jsonConfig.getString("regexps"));
-		listRegexp.replaceNamesByDef();
 
 		// create list of log patterns
 		ListLogPatterns listLogPatterns = new ListLogPatterns();
 		listLogPatterns.setListPatterns(jsonConfig.getString("patterns"));
 
+		// in lazy mode, only the regex used by the patterns are expanded and compiled
+		if (jsonConfig.getBoolean("lazyRegexp", false)) {
+			listRegexp.replaceNamesByDef(listLogPatterns.getReferencedRegexNames());
+		} else {
+			listRegexp.replaceNamesByDef();
+		}
+		listLogPatterns.resolveRegexIds(listRegexp);
+
+		// the lines are dispatched on a column with literal values, to try fewer patterns
+		if (jsonConfig.getBoolean("patternDispatch", false)) {
+			listLogPatterns.buildDispatch(listRegexp);
+		}
+
 		// create a list of the couples pattern/numberOfLineMatching
 		// PS : at the beginning, numberOfLineMatching = 0
 		ListPatternLineMatching list = new ListPatternLineMatching();
@@ -44,13 +61,41 @@ public class AnalyseLogFile {
 
 		// read the logfile and set a list of its lines depending on the delimiter
 		LogFile logFile = new LogFile(jsonConfig.getString("inputLog"), list);
+		logFile.setAdaptiveFieldOrder(jsonConfig.getBoolean("adaptiveFieldOrder", false));
+		logFile.setMultiRegexMatching(jsonConfig.getBoolean("multiRegex", false));
+		logFile.setInputMode(jsonConfig.getString("inputMode", "buffered"));
+		logFile.setInputCharset(jsonConfig.getString("inputCharset", "UTF-8"));
+
+		// number of threads analysing the records, sharing the compiled regex and patterns
+		logFile.setNbThreads(jsonConfig.getInt("threads", 1));
 
-		// change the value of start and finish line if both equal to -1
+		// cache of the results on the values repeating across lines (0 : no cache)
+		if (jsonConfig.getInt("fieldCacheSize", 0) > 0) {
+			logFile.setFieldValueCache(new FieldValueCache(jsonConfig.getInt("fieldCacheSize")));
+		}
+
+		// cache of the results of the recent lines, for the lines repeating identically (0 : no cache)
+		if (jsonConfig.getInt("lineCacheSize", 0) > 0) {
+			logFile.setLineResultCache(new LineResultCache(jsonConfig.getInt("lineCacheSize")));
+		}
+
+		// in frequency mode, the patterns are tried from the most frequent one, learned
+		// during this run and the previous ones (profile saved next to the patterns file)
+		String profileFile = jsonConfig.getString("patterns") + ".profile";
+
+		if (jsonConfig.getString("patternOrder", "file").equals("frequency")) {
+			PatternProfile profile = new PatternProfile(listLogPatterns);
+			profile.load(profileFile);
+			logFile.setPatternProfile(profile);
+		}
+
+		// change the value of start and finish line if both equal to -1 : the whole file is
+		// read, and its number of records counted while it is analysed
 		int startLine, finishLine;
 
 		if (jsonConfig.getInt("startLine") == -1 && jsonConfig.getInt("finishLine") == -1) {
 			startLine = 1;
-			finishLine = logFile.nbLinesLogFile();
+			finishLine = Integer.MAX_VALUE;
 		} else {
 			startLine = jsonConfig.getInt("startLine");
 			finishLine = jsonConfig.getInt("finishLine");
@@ -69,12 +114,32 @@ public class AnalyseLogFile {
 		logFile.compare(listRegexp, jsonConfig.getString("delimiter").charAt(0), listLogPatterns, startLine,
 				finishLine);
 
+		if (logFile.getPatternProfile() != null) {
+			logFile.getPatternProfile().save(profileFile);
+		}
+
 		// output the results
-		int nbLinesProcessed = finishLine - startLine + 1;
+		int nbLinesProcessed = logFile.getNbLinesProcessed();
 		for (PatternLineMatching l : logFile.getList().getListPatternLineMatching()) {
 
 			System.out.println(l.getPattern().getLogInfos()[0] + l.getPattern().getLogInfos()[2] + ": "
 					+ l.getNbLineMatching() + " / " + nbLinesProcessed);
 		}
+
+		if (logFile.getFieldValueCache() != null) {
+			System.out.println(logFile.getFieldValueCache());
+		}
+
+		if (logFile.getLineResultCache() != null) {
+			System.out.println(logFile.getLineResultCache());
+		}
+
+		if (listRegexp.isPrefilter()) {
+			System.out.println(listRegexp.prefilterStats());
+		}
+
+		if (logFile.getMatchTimeoutReport().getNbTimeouts() > 0) {
+			System.out.println(logFile.getMatchTimeoutReport());
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package aliachawaf;
+
+import java.util.Arrays;
+
+/*
+ * sets of chars represented by sorted, disjoint and non adjacent ranges :
+ * {lo0, hi0, lo1, hi1, ...} (bounds included)
+ */
+public class CharRanges {
+
+	public static final int MAX_CHAR = 0xFFFF;
+
+	public static final int[] NONE = {};
+	public static final int[] ALL = { 0, MAX_CHAR };
+	public static final int[] DIGIT = { '0', '9' };
+	public static final int[] WORD = { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+	public static final int[] SPACE = { '\t', '\r', ' ', ' ' };
+
+	// any char but the line terminators, as '.' without DOTALL
+	public static final int[] DOT = complement(
+			union(union(of('\n', '\n'), of('\r', '\r')), union(of(0x85, 0x85), of(0x2028, 0x2029))));
+
+	private CharRanges() {
+	}
+
+	public static int[] of(int lo, int hi) {
+		return new int[] { lo, hi };
+	}
+
+	public static boolean contains(int[] ranges, int c) {
+
+		for (int i = 0; i < ranges.length && ranges[i] <= c; i += 2) {
+
+			if (c <= ranges[i + 1]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public static int[] union(int[] ranges1, int[] ranges2) {
+
+		int[] all = new int[ranges1.length + ranges2.length];
+		int[] order = new int[all.length / 2];
+		int[] result = new int[all.length];
+		int n = 0;
+
+		System.arraycopy(ranges1, 0, all, 0, ranges1.length);
+		System.arraycopy(ranges2, 0, all, ranges1.length, ranges2.length);
+
+		// sort the ranges by their lower bound, then merge the overlapping or adjacent ones
+		long[] keys = new long[order.length];
+
+		for (int k = 0; k < keys.length; k++) {
+			keys[k] = ((long) all[2 * k] << 32) | all[2 * k + 1];
+		}
+		Arrays.sort(keys);
+
+		for (long key : keys) {
+
+			int lo = (int) (key >>> 32);
+			int hi = (int) key;
+
+			if (n > 0 && lo <= result[n - 1] + 1) {
+				result[n - 1] = Math.max(result[n - 1], hi);
+			} else {
+				result[n++] = lo;
+				result[n++] = hi;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	public static int[] complement(int[] ranges) {
+
+		int[] result = new int[ranges.length + 2];
+		int n = 0;
+		int next = 0;
+
+		for (int i = 0; i < ranges.length; i += 2) {
+
+			if (ranges[i] > next) {
+				result[n++] = next;
+				result[n++] = ranges[i] - 1;
+			}
+			next = ranges[i + 1] + 1;
+		}
+
+		if (next <= MAX_CHAR) {
+			result[n++] = next;
+			result[n++] = MAX_CHAR;
+		}
+		return Arrays.copyOf(result, n);
+	}
+}
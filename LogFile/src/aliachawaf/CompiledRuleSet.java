@@ -0,0 +1,210 @@
+package aliachawaf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * the regex and the patterns of an analysis, frozen and ready to match : the
+ * compiled matcher of each regex id, the regex ids of each pattern, the
+ * patterns grouped by number of fields (by index), their dispatch tables, and
+ * the tables of the multi-regex mode and of the frequency order when they are
+ * used. Everything is copied from the lists when the rule set is compiled, and
+ * only read afterwards : the lists can change, the rule set doesn't.
+ *
+ * The matchers can be shared between threads (RegexMatcher keeps one Matcher
+ * per thread, the DFA publishes its states through volatile arrays, the
+ * prefilter counters are LongAdders). Nothing of a run is kept here, so one rule
+ * set can be shared by any number of threads, each of them analysing its lines
+ * with its own RuleSetAnalysis
+ */
+public final class CompiledRuleSet {
+
+	// the patterns in the order of the file (the pattern p has the index p)
+	private final LogPattern[] patterns;
+
+	// regexIds[p][i] is the id of the regex expected in the field i by the pattern p, and
+	// regexNames[p][i] its name in the pattern
+	private final int[][] regexIds;
+	private final String[][] regexNames;
+
+	// patternsByNbFields[n] : the indexes of the patterns having n fields, in the order of the file
+	private final int[][] patternsByNbFields;
+
+	// dispatchByNbFields[n] : dispatch of the patterns having n fields, null if none is built for them
+	private final PatternDispatch[] dispatchByNbFields;
+
+	// multi-regex mode : patternSetMatchers[n] finds the first of the patterns having n fields
+	// (null if the mode isn't used)
+	private final PatternSetMatcher[] patternSetMatchers;
+
+	// frequency order : earlierOverlapping[p] lists the indexes of the patterns placed before the
+	// pattern p in the file which could match the same lines (null if the order isn't used)
+	private final int[][] earlierOverlapping;
+
+	// regex : definition id and matcher of each regex id
+	private final int[] definitionIds;
+	private final FieldMatcher[] matchers;
+
+	private CompiledRuleSet(LogPattern[] patterns, int[][] regexIds, String[][] regexNames,
+			int[][] patternsByNbFields, PatternDispatch[] dispatchByNbFields, PatternSetMatcher[] patternSetMatchers,
+			int[][] earlierOverlapping, int[] definitionIds, FieldMatcher[] matchers) {
+		this.patterns = patterns;
+		this.regexIds = regexIds;
+		this.regexNames = regexNames;
+		this.patternsByNbFields = patternsByNbFields;
+		this.dispatchByNbFields = dispatchByNbFields;
+		this.patternSetMatchers = patternSetMatchers;
+		this.earlierOverlapping = earlierOverlapping;
+		this.definitionIds = definitionIds;
+		this.matchers = matchers;
+	}
+
+	/*
+	 * builds the rule set from the lists once loaded : the definitions expanded and
+	 * compiled, the regex ids of the patterns resolved (and their dispatch built,
+	 * if it is used). The union DFAs of the multi-regex mode and the tables of the
+	 * frequency order are only built for the modes used
+	 */
+	public static CompiledRuleSet compile(ListRegexp listRegexp, ListLogPatterns listLogPatterns,
+			boolean multiRegexMatching, boolean frequencyOrder) {
+
+		List<LogPattern> listPatterns = listLogPatterns.getListPatterns();
+		LogPattern[] patterns = listPatterns.toArray(new LogPattern[listPatterns.size()]);
+		int[][] regexIds = new int[patterns.length][];
+		String[][] regexNames = new String[patterns.length][];
+		int maxNbFields = -1;
+
+		for (int p = 0; p < patterns.length; p++) {
+
+			if (patterns[p].getRegexIds() == null) {
+				throw new IllegalArgumentException("The regex ids of the patterns have to be resolved first");
+			}
+			regexIds[p] = patterns[p].getRegexIds().clone();
+			regexNames[p] = patterns[p].getListRegexName().toArray(new String[regexIds[p].length]);
+			maxNbFields = Math.max(maxNbFields, regexIds[p].length);
+		}
+
+		int[][] patternsByNbFields = new int[maxNbFields + 1][];
+		PatternDispatch[] dispatchByNbFields = new PatternDispatch[maxNbFields + 1];
+		PatternSetMatcher[] patternSetMatchers = multiRegexMatching ? new PatternSetMatcher[maxNbFields + 1] : null;
+		int[][] earlierOverlapping = frequencyOrder ? new int[patterns.length][] : null;
+		List<LogPattern> group;
+
+		for (int n = 0; n <= maxNbFields; n++) {
+
+			group = listLogPatterns.getPatternsByNbFields(n);
+			patternsByNbFields[n] = new int[group.size()];
+
+			for (int k = 0; k < group.size(); k++) {
+				patternsByNbFields[n][k] = group.get(k).getIndex();
+			}
+
+			dispatchByNbFields[n] = listLogPatterns.getDispatch(n);
+
+			if (multiRegexMatching && !group.isEmpty()) {
+				patternSetMatchers[n] = new PatternSetMatcher(group, listRegexp);
+			}
+
+			if (frequencyOrder) {
+				earlierOverlapping(group, listLogPatterns, listRegexp, earlierOverlapping);
+			}
+		}
+
+		int nbRegexp = listRegexp.getListRegexp().size();
+		int[] definitionIds = new int[nbRegexp];
+		FieldMatcher[] matchers = new FieldMatcher[nbRegexp];
+
+		for (int id = 0; id < nbRegexp; id++) {
+			definitionIds[id] = listRegexp.getDefinitionId(id);
+			matchers[id] = listRegexp.getMatcher(id);
+		}
+
+		return new CompiledRuleSet(patterns, regexIds, regexNames, patternsByNbFields, dispatchByNbFields,
+				patternSetMatchers, earlierOverlapping, definitionIds, matchers);
+	}
+
+	// fills earlierOverlapping for a group of patterns having the same number of fields
+	private static void earlierOverlapping(List<LogPattern> group, ListLogPatterns listLogPatterns,
+			ListRegexp listRegexp, int[][] earlierOverlapping) {
+
+		List<Integer> earlier = new ArrayList<Integer>();
+
+		for (int k = 0; k < group.size(); k++) {
+
+			earlier.clear();
+
+			for (int j = 0; j < k; j++) {
+
+				if (!listLogPatterns.areDisjoint(group.get(j), group.get(k), listRegexp)) {
+					earlier.add(group.get(j).getIndex());
+				}
+			}
+
+			int[] indexes = new int[earlier.size()];
+
+			for (int e = 0; e < indexes.length; e++) {
+				indexes[e] = earlier.get(e);
+			}
+			earlierOverlapping[group.get(k).getIndex()] = indexes;
+		}
+	}
+
+	// returns a new analysis, to be used by one thread at a time
+	public RuleSetAnalysis newAnalysis() {
+		return new RuleSetAnalysis(this);
+	}
+
+	// getters
+	public int getNbPatterns() {
+		return patterns.length;
+	}
+
+	public LogPattern getPattern(int pattern) {
+		return patterns[pattern];
+	}
+
+	public int getRegexId(int pattern, int field) {
+		return regexIds[pattern][field];
+	}
+
+	public String getRegexName(int pattern, int field) {
+		return regexNames[pattern][field];
+	}
+
+	// the arrays returned below are the ones of the rule set, and must not be modified
+
+	// returns the indexes of the patterns having the number of fields in parameter (empty if there is none)
+	int[] getPatternsByNbFields(int nbFields) {
+		return (nbFields < patternsByNbFields.length) ? patternsByNbFields[nbFields] : new int[0];
+	}
+
+	// returns the dispatch of the patterns having the number of fields in parameter, null if none
+	PatternDispatch getDispatch(int nbFields) {
+		return (nbFields < dispatchByNbFields.length) ? dispatchByNbFields[nbFields] : null;
+	}
+
+	// returns the matcher of the patterns having the number of fields in parameter, null if none
+	PatternSetMatcher getPatternSetMatcher(int nbFields) {
+
+		if (patternSetMatchers == null) {
+			throw new IllegalStateException("The rule set isn't compiled for the multi-regex mode");
+		}
+		return (nbFields < patternSetMatchers.length) ? patternSetMatchers[nbFields] : null;
+	}
+
+	int[] getEarlierOverlapping(int pattern) {
+
+		if (earlierOverlapping == null) {
+			throw new IllegalStateException("The rule set isn't compiled for the frequency order");
+		}
+		return earlierOverlapping[pattern];
+	}
+
+	int[] getDefinitionIds() {
+		return definitionIds;
+	}
+
+	FieldMatcher[] getMatchers() {
+		return matchers;
+	}
+}
@@ -0,0 +1,51 @@
+package aliachawaf;
+
+/*
+ * a field seen by the regex engine, which checks the clock while the engine
+ * reads it : a backtracking regex reads the same characters again and again,
+ * so it can't run past the deadline without being stopped here
+ */
+public class DeadlineCharSequence implements CharSequence {
+
+	// the clock is read once every CHECK_INTERVAL characters read
+	private static final int CHECK_INTERVAL = 1024;
+
+	private String field;
+	private long deadline;
+	private int nbReads;
+
+	// constructor : deadline is a value of System.nanoTime()
+	public DeadlineCharSequence(String field, long deadline) {
+		this.field = field;
+		this.deadline = deadline;
+		this.nbReads = 0;
+	}
+
+	@Override
+	public char charAt(int index) {
+
+		if (++nbReads == CHECK_INTERVAL) {
+			nbReads = 0;
+
+			if (System.nanoTime() - deadline > 0) {
+				throw new MatchTimeoutException("Match timeout on a field of " + field.length() + " characters");
+			}
+		}
+		return field.charAt(index);
+	}
+
+	@Override
+	public int length() {
+		return field.length();
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return field.subSequence(start, end);
+	}
+
+	@Override
+	public String toString() {
+		return field;
+	}
+}
@@ -0,0 +1,485 @@
+package aliachawaf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * matches a whole field in a time linear in its length, with a DFA built lazily
+ * from the NFA of the definition : a state of the DFA is created the first time
+ * a field leads to it, and then reused without allocation.
+ * 
+ * Only the definitions accepted by RegexParser are compiled this way (see
+ * compile), and the fields containing surrogate chars (which java.util.regex
+ * reads as code points) are checked by the regex kept as fallback.
+ * 
+ * A DFA can also be the union of several definitions (see compileUnion) : each
+ * state then knows which of them accept the chars read so far, so one scan of a
+ * field gives all the definitions it matches
+ */
+public class DfaMatcher implements FieldMatcher {
+
+	// limits over which we keep java.util.regex for the definition
+	private static final int MAX_NFA_STATES = 10000;
+	private static final int MAX_DFA_STATES = 5000;
+
+	// types of the NFA states
+	private static final int CHARS = 0;
+	private static final int SPLIT = 1;
+	private static final int MATCH = 2;
+
+	// the DFA state 0 is the dead state (no NFA state left)
+	private static final int DEAD = 0;
+
+	// number of definitions of the DFA (1 unless it is a union)
+	private int nbTags;
+
+	private FieldMatcher fallback;
+
+	// NFA : type, ranges and successors of each state (for a MATCH state, the
+	// first successor is the index of its definition in the union)
+	private List<Integer> nfaTypes;
+	private List<int[]> nfaRanges;
+	private List<int[]> nfaNext;
+	private int nfaStart;
+
+	/*
+	 * the chars are grouped in classes which lead to the same NFA states :
+	 * classStarts[k] is the first char of the class k, asciiClasses[c] the class of
+	 * the ASCII char c
+	 */
+	private int[] classStarts;
+	private int[] asciiClasses;
+	private int nbClasses;
+
+	// DFA states : the NFA states they stand for, and the index of each set
+	private List<int[]> dfaStates;
+	private Map<NfaSet, Integer> dfaStateIds;
+	private int startState;
+	private boolean startAccepting;
+
+	// stateTags[state] : bit k is set if the definition k accepts in this state
+	private volatile long[][] stateTags;
+
+	/*
+	 * transitions[state * nbClasses + class] is 0 if not computed yet, else
+	 * ((target + 1) << 1) | (1 if target is accepting). The array is replaced
+	 * (never modified in place beyond its own length) when it grows, so that
+	 * the threads reading it without lock always see a consistent state
+	 */
+	private volatile int[] transitions;
+	private volatile boolean tooManyStates;
+
+	private DfaMatcher(FieldMatcher fallback) {
+		this.fallback = fallback;
+		this.nfaTypes = new ArrayList<Integer>();
+		this.nfaRanges = new ArrayList<int[]>();
+		this.nfaNext = new ArrayList<int[]>();
+		this.dfaStates = new ArrayList<int[]>();
+		this.dfaStateIds = new HashMap<NfaSet, Integer>();
+		this.stateTags = new long[16][];
+		this.tooManyStates = false;
+		this.nbTags = 1;
+	}
+
+	/*
+	 * returns the DFA matcher of the definition, or null if the definition uses
+	 * a construct the DFA doesn't handle (then java.util.regex has to be used)
+	 */
+	public static DfaMatcher compile(String definition, FieldMatcher fallback) {
+
+		try {
+			RegexNode node = RegexParser.parseFullMatch(definition);
+			DfaMatcher dfa = new DfaMatcher(fallback);
+
+			int match = dfa.addNfaState(MATCH, CharRanges.NONE, 0, -1);
+			dfa.nfaStart = dfa.buildNfa(node, match);
+			dfa.buildClasses();
+			dfa.buildStartStates();
+
+			return dfa;
+
+		} catch (UnsupportedRegexException e) {
+			return null;
+		}
+	}
+
+	/*
+	 * returns the DFA of the union of the trees (from RegexParser), the definition
+	 * k being the tree k, or null if the NFA is too big. There is no fallback :
+	 * run returns -1 for the fields the DFA doesn't handle
+	 */
+	public static DfaMatcher compileUnion(List<RegexNode> nodes) {
+
+		try {
+			DfaMatcher dfa = new DfaMatcher(null);
+			int start = -1;
+
+			dfa.nbTags = nodes.size();
+
+			for (int k = nodes.size() - 1; k >= 0; k--) {
+				int match = dfa.addNfaState(MATCH, CharRanges.NONE, k, -1);
+				int branch = dfa.buildNfa(nodes.get(k), match);
+				start = (start == -1) ? branch : dfa.addNfaState(SPLIT, CharRanges.NONE, branch, start);
+			}
+
+			dfa.nfaStart = start;
+			dfa.buildClasses();
+			dfa.buildStartStates();
+
+			return dfa;
+
+		} catch (UnsupportedRegexException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public boolean matches(String field) {
+
+		int transition = this.walk(field);
+
+		if (transition == 0) {
+			return fallback.matches(field);
+		}
+		return (transition & 1) != 0;
+	}
+
+	/*
+	 * returns the state reached at the end of the field (DEAD if no definition can
+	 * match it), -1 if the DFA can't read the field
+	 */
+	public int run(String field) {
+
+		int transition = this.walk(field);
+
+		return (transition == 0) ? -1 : (transition >> 1) - 1;
+	}
+
+	// returns the definitions accepting in the state (bit k for the definition k), not to be modified
+	public long[] getTags(int state) {
+		return stateTags[state];
+	}
+
+	// returns the last transition taken on the field (encoded as in transitions), 0 if the DFA can't be used
+	private int walk(String field) {
+
+		if (tooManyStates) {
+			return 0;
+		}
+
+		int[] table = transitions;
+		int state = startState;
+		int transition = ((startState + 1) << 1) | (startAccepting ? 1 : 0);
+		char c;
+
+		for (int i = 0; i < field.length(); i++) {
+
+			c = field.charAt(i);
+
+			if (Character.isSurrogate(c)) {
+				return 0;
+			}
+
+			transition = table[state * nbClasses + ((c < 128) ? asciiClasses[c] : this.classOf(c))];
+
+			if (transition == 0) {
+				transition = this.computeTransition(state, (c < 128) ? asciiClasses[c] : this.classOf(c));
+
+				if (transition == 0) {
+					return 0;
+				}
+				table = transitions;
+			}
+
+			state = (transition >> 1) - 1;
+
+			if (state == DEAD) {
+				return transition;
+			}
+		}
+		return transition;
+	}
+
+	private int classOf(char c) {
+
+		int k = Arrays.binarySearch(classStarts, c);
+
+		return (k >= 0) ? k : -k - 2;
+	}
+
+	// computes the transition, 0 if the DFA is too big
+	private synchronized int computeTransition(int state, int charClass) {
+
+		int[] table = transitions;
+
+		if (table[state * nbClasses + charClass] != 0) {
+			return table[state * nbClasses + charClass];
+		}
+
+		int[] targetSet = this.step(dfaStates.get(state), classStarts[charClass]);
+		int target = this.dfaStateId(targetSet);
+
+		if (target == -1) {
+			tooManyStates = true;
+			return 0;
+		}
+
+		int transition = ((target + 1) << 1) | (this.isAccepting(targetSet) ? 1 : 0);
+
+		transitions[state * nbClasses + charClass] = transition;
+
+		return transition;
+	}
+
+	// returns the id of the DFA state standing for the set of NFA states, created if needed (-1 if too many)
+	private int dfaStateId(int[] nfaSet) {
+
+		NfaSet key = new NfaSet(nfaSet);
+		Integer id = dfaStateIds.get(key);
+
+		if (id != null) {
+			return id;
+		}
+
+		if (dfaStates.size() == MAX_DFA_STATES) {
+			return -1;
+		}
+
+		id = dfaStates.size();
+		dfaStates.add(nfaSet);
+		dfaStateIds.put(key, id);
+
+		// the tags are set before any transition leads to the state
+		long[][] tags = (id < stateTags.length) ? stateTags : Arrays.copyOf(stateTags, 2 * stateTags.length);
+		tags[id] = this.tagsOf(nfaSet);
+		stateTags = tags;
+
+		// a new row of transitions : the array is grown by copy
+		if (transitions == null || (id + 1) * nbClasses > transitions.length) {
+
+			int capacity = (transitions == null) ? 16 : 2 * transitions.length / nbClasses;
+			transitions = (transitions == null) ? new int[capacity * nbClasses]
+					: Arrays.copyOf(transitions, capacity * nbClasses);
+		}
+
+		return id;
+	}
+
+	private boolean isAccepting(int[] nfaSet) {
+
+		for (int s : nfaSet) {
+			if (nfaTypes.get(s) == MATCH) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// the definitions whose MATCH state is in the set
+	private long[] tagsOf(int[] nfaSet) {
+
+		long[] tags = new long[(nbTags + 63) / 64];
+
+		for (int s : nfaSet) {
+			if (nfaTypes.get(s) == MATCH) {
+				tags[nfaNext.get(s)[0] >> 6] |= 1L << nfaNext.get(s)[0];
+			}
+		}
+		return tags;
+	}
+
+	// NFA states reached from the set by reading the char c
+	private int[] step(int[] nfaSet, int c) {
+
+		List<Integer> targets = new ArrayList<Integer>();
+
+		for (int s : nfaSet) {
+			if (nfaTypes.get(s) == CHARS && CharRanges.contains(nfaRanges.get(s), c)) {
+				targets.add(nfaNext.get(s)[0]);
+			}
+		}
+		return this.closure(targets);
+	}
+
+	// the states reached by following the SPLIT states, sorted, SPLIT states excluded
+	private int[] closure(List<Integer> states) {
+
+		boolean[] seen = new boolean[nfaTypes.size()];
+		List<Integer> stack = new ArrayList<Integer>(states);
+		List<Integer> result = new ArrayList<Integer>();
+		int s;
+
+		while (!stack.isEmpty()) {
+
+			s = stack.remove(stack.size() - 1);
+
+			if (s < 0 || seen[s]) {
+				continue;
+			}
+			seen[s] = true;
+
+			if (nfaTypes.get(s) == SPLIT) {
+				stack.add(nfaNext.get(s)[1]);
+				stack.add(nfaNext.get(s)[0]);
+			} else {
+				result.add(s);
+			}
+		}
+
+		int[] set = new int[result.size()];
+
+		for (int i = 0; i < set.length; i++) {
+			set[i] = result.get(i);
+		}
+		Arrays.sort(set);
+		return set;
+	}
+
+	private void buildStartStates() {
+
+		List<Integer> start = new ArrayList<Integer>();
+		start.add(nfaStart);
+
+		// state 0 : dead, then the start state (also dead if the definition can't match anything)
+		this.dfaStateId(new int[0]);
+		int[] startSet = this.closure(start);
+		startState = this.dfaStateId(startSet);
+
+		startAccepting = this.isAccepting(startSet);
+
+		// the dead state stays dead
+		for (int k = 0; k < nbClasses; k++) {
+			transitions[DEAD * nbClasses + k] = ((DEAD + 1) << 1);
+		}
+	}
+
+	// the class boundaries are the chars where the membership of one of the NFA sets changes
+	private void buildClasses() {
+
+		int[] starts = new int[2 * nfaRanges.size() + 1];
+		int n = 0;
+
+		starts[n++] = 0;
+
+		for (int[] ranges : nfaRanges) {
+			for (int i = 0; i < ranges.length; i += 2) {
+				starts = (n + 2 > starts.length) ? Arrays.copyOf(starts, 2 * starts.length + 2) : starts;
+				starts[n++] = ranges[i];
+				if (ranges[i + 1] < CharRanges.MAX_CHAR) {
+					starts[n++] = ranges[i + 1] + 1;
+				}
+			}
+		}
+
+		starts = Arrays.copyOf(starts, n);
+		Arrays.sort(starts);
+
+		int distinct = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == 0 || starts[i] != starts[i - 1]) {
+				starts[distinct++] = starts[i];
+			}
+		}
+
+		classStarts = Arrays.copyOf(starts, distinct);
+		nbClasses = distinct;
+		asciiClasses = new int[128];
+
+		for (char c = 0; c < 128; c++) {
+			asciiClasses[c] = this.classOf(c);
+		}
+	}
+
+	private int addNfaState(int type, int[] ranges, int next1, int next2) throws UnsupportedRegexException {
+
+		if (nfaTypes.size() == MAX_NFA_STATES) {
+			throw new UnsupportedRegexException("too many NFA states");
+		}
+
+		nfaTypes.add(type);
+		nfaRanges.add(ranges);
+		nfaNext.add(new int[] { next1, next2 });
+
+		return nfaTypes.size() - 1;
+	}
+
+	// builds the NFA of the node followed by the state next, returns its first state
+	private int buildNfa(RegexNode node, int next) throws UnsupportedRegexException {
+
+		List<RegexNode> children = node.getChildren();
+		int start;
+
+		switch (node.getType()) {
+
+		case RegexNode.CHARS:
+			return this.addNfaState(CHARS, node.getRanges(), next, -1);
+
+		case RegexNode.EMPTY:
+			return next;
+
+		case RegexNode.CONCAT:
+			start = next;
+			for (int i = children.size() - 1; i >= 0; i--) {
+				start = this.buildNfa(children.get(i), start);
+			}
+			return start;
+
+		case RegexNode.ALTERNATION:
+			start = this.buildNfa(children.get(children.size() - 1), next);
+			for (int i = children.size() - 2; i >= 0; i--) {
+				start = this.addNfaState(SPLIT, CharRanges.NONE, this.buildNfa(children.get(i), next), start);
+			}
+			return start;
+
+		case RegexNode.REPEAT:
+			RegexNode child = children.get(0);
+			int tail = next;
+
+			if (node.getMax() == -1) {
+				// loop : the SPLIT state goes into the child (which comes back to it) or leaves
+				int loop = this.addNfaState(SPLIT, CharRanges.NONE, -1, next);
+				nfaNext.get(loop)[0] = this.buildNfa(child, loop);
+				tail = loop;
+			} else {
+				// the optional copies : child (child (child)?)?)?
+				for (int k = 0; k < node.getMax() - node.getMin(); k++) {
+					tail = this.addNfaState(SPLIT, CharRanges.NONE, this.buildNfa(child, tail), next);
+				}
+			}
+
+			// the mandatory copies
+			for (int k = 0; k < node.getMin(); k++) {
+				tail = this.buildNfa(child, tail);
+			}
+			return tail;
+
+		default:
+			throw new UnsupportedRegexException("assertion left in the tree");
+		}
+	}
+
+	// key of the map of the DFA states
+	private static final class NfaSet {
+
+		private final int[] states;
+		private final int hash;
+
+		private NfaSet(int[] states) {
+			this.states = states;
+			this.hash = Arrays.hashCode(states);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof NfaSet && Arrays.equals(states, ((NfaSet) other).states);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package aliachawaf;
+
+import java.util.Arrays;
+
+public class FieldMatchMemo {
+
+	// definition id and matcher of each regex id
+	private int[] definitionIds;
+	private FieldMatcher[] matchers;
+	private int nbDefinitions;
+
+	// optional cache of the results across lines, null if not used
+	private FieldValueCache fieldValueCache;
+
+	/*
+	 * the result of the regex of definition id on the field i of the current line
+	 * is results[i * nbDefinitions + id], valid only if stamps[i * nbDefinitions + id]
+	 * equals lineStamp : changing the stamp forgets all the results at once.
+	 * timedOut[k] is true if the check of results[k] ran out of time
+	 */
+	private int[] stamps;
+	private boolean[] results;
+	private boolean[] timedOut;
+	private int lineStamp;
+
+	// true if a check of the current line ran out of time
+	private boolean lineTimedOut;
+
+	// constructors : the definitions have to be compiled
+	public FieldMatchMemo(ListRegexp listRegexp) {
+		this(definitionIdsOf(listRegexp), matchersOf(listRegexp));
+	}
+
+	public FieldMatchMemo(CompiledRuleSet ruleSet) {
+		this(ruleSet.getDefinitionIds(), ruleSet.getMatchers());
+	}
+
+	private FieldMatchMemo(int[] definitionIds, FieldMatcher[] matchers) {
+		this.definitionIds = definitionIds;
+		this.matchers = matchers;
+		this.nbDefinitions = definitionIds.length;
+		this.stamps = new int[0];
+		this.results = new boolean[0];
+		this.timedOut = new boolean[0];
+		this.lineStamp = 1;
+		this.lineTimedOut = false;
+		this.fieldValueCache = null;
+	}
+
+	private static int[] definitionIdsOf(ListRegexp listRegexp) {
+
+		int[] definitionIds = new int[listRegexp.getListRegexp().size()];
+
+		for (int id = 0; id < definitionIds.length; id++) {
+			definitionIds[id] = listRegexp.getDefinitionId(id);
+		}
+		return definitionIds;
+	}
+
+	private static FieldMatcher[] matchersOf(ListRegexp listRegexp) {
+
+		FieldMatcher[] matchers = new FieldMatcher[listRegexp.getListRegexp().size()];
+
+		for (int id = 0; id < matchers.length; id++) {
+			matchers[id] = listRegexp.getMatcher(id);
+		}
+		return matchers;
+	}
+
+	// getter & setter
+	public boolean hasTimedOut() {
+		return lineTimedOut;
+	}
+
+	public void setFieldValueCache(FieldValueCache fieldValueCache) {
+		this.fieldValueCache = fieldValueCache;
+	}
+
+	// forget the results of the previous line
+	public void newLine(int nbFields) {
+
+		lineStamp++;
+		lineTimedOut = false;
+
+		if (lineStamp == 0) {
+			// the stamp has overflowed, the old stamps could be taken for the current one
+			Arrays.fill(stamps, 0);
+			lineStamp = 1;
+		}
+
+		if (stamps.length < nbFields * nbDefinitions) {
+			stamps = new int[nbFields * nbDefinitions];
+			results = new boolean[nbFields * nbDefinitions];
+			timedOut = new boolean[nbFields * nbDefinitions];
+		}
+	}
+
+	/*
+	 * check if the field number i of the current line matches the regex whose id is
+	 * in parameter. Each definition runs at most once per field and per line, even
+	 * if several patterns (or several names with the same definition) expect it.
+	 * MatchTimeoutException is thrown by the check which ran out of time, and again
+	 * by each later check of the same field and definition on this line, so that
+	 * every pattern expecting it sees the timeout
+	 */
+	public boolean matches(int i, int id, String field) {
+
+		int definitionId = definitionIds[id];
+		int k = i * nbDefinitions + definitionId;
+		Boolean cached;
+
+		if (stamps[k] != lineStamp) {
+
+			timedOut[k] = false;
+
+			// the same value may have been checked on a previous line
+			cached = (fieldValueCache == null) ? null : fieldValueCache.get(i, definitionId, field);
+
+			if (cached != null) {
+				results[k] = cached;
+			} else {
+				try {
+					results[k] = matchers[id].matches(field);
+				} catch (MatchTimeoutException e) {
+					// the field counts as non-matching for all the patterns of this line,
+					// but a timeout isn't kept across lines
+					results[k] = false;
+					timedOut[k] = true;
+					stamps[k] = lineStamp;
+					lineTimedOut = true;
+					throw e;
+				}
+
+				if (fieldValueCache != null) {
+					fieldValueCache.put(i, definitionId, field, results[k]);
+				}
+			}
+			stamps[k] = lineStamp;
+
+		} else if (timedOut[k]) {
+			throw new MatchTimeoutException("Match timeout on field " + (i + 1) + ", already reached on this line");
+		}
+		return results[k];
+	}
+}
@@ -0,0 +1,7 @@
+package aliachawaf;
+
+// checks if a whole field matches one regex definition
+public interface FieldMatcher {
+
+	public boolean matches(String field);
+}
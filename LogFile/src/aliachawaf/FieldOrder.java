@@ -0,0 +1,127 @@
+package aliachawaf;
+
+public class FieldOrder {
+
+	// number of checks of the pattern between two reorderings of its fields
+	private static final int REORDER_PERIOD = 1024;
+
+	// one check of the pattern out of COST_SAMPLE_PERIOD is timed, field by field
+	private static final int COST_SAMPLE_PERIOD = 16;
+
+	/*
+	 * order[k] is the index of the k-th field to check ;
+	 * nbChecks[i] and nbRejections[i] count how many times the field i has been
+	 * checked and how many times it didn't match ;
+	 * nbTimedChecks[i] and checkNanos[i] count how many checks of the field i have
+	 * been timed and the time they took
+	 */
+	private int[] order;
+	private long[] nbChecks;
+	private long[] nbRejections;
+	private long[] nbTimedChecks;
+	private long[] checkNanos;
+	private int nbPatternChecks;
+
+	// constructor : at the beginning the fields are checked in the order of the line
+	public FieldOrder(int nbFields) {
+		order = new int[nbFields];
+		nbChecks = new long[nbFields];
+		nbRejections = new long[nbFields];
+		nbTimedChecks = new long[nbFields];
+		checkNanos = new long[nbFields];
+		nbPatternChecks = 0;
+
+		for (int i = 0; i < nbFields; i++) {
+			order[i] = i;
+		}
+	}
+
+	// getters
+	public int[] getOrder() {
+		return order;
+	}
+
+	// true if the checks of the fields of the current check of the pattern are to be timed
+	public boolean isCostSampled() {
+		return nbPatternChecks % COST_SAMPLE_PERIOD == 0;
+	}
+
+	// record the result of the check of one field
+	public void recordCheck(int field, boolean fieldMatches) {
+
+		nbChecks[field]++;
+
+		if (!fieldMatches) {
+			nbRejections[field]++;
+		}
+	}
+
+	// record the time taken by one check of a field (on a sampled check of the pattern)
+	public void recordCost(int field, long nanos) {
+		nbTimedChecks[field]++;
+		checkNanos[field] += nanos;
+	}
+
+	// record the end of the check of the pattern, and sometimes reorder its fields
+	public void recordPatternCheck() {
+
+		nbPatternChecks++;
+
+		if (nbPatternChecks == REORDER_PERIOD) {
+			this.reorder();
+			nbPatternChecks = 0;
+		}
+	}
+
+	/*
+	 * rate of the checks of the field which didn't match. The rate is smoothed so
+	 * that a field never checked yet (because another one always rejected
+	 * before it) still gets a chance to move up
+	 */
+	public double getRejectionRate(int field) {
+		return (nbRejections[field] + 1.0) / (nbChecks[field] + 2.0);
+	}
+
+	/*
+	 * average time of a check of the field, in nanoseconds. A field never timed
+	 * yet counts as the cheapest, so that it moves up and gets timed
+	 */
+	public double getCost(int field) {
+		return (checkNanos[field] + 1.0) / (nbTimedChecks[field] + 1.0);
+	}
+
+	/*
+	 * the fields are checked by decreasing rejection rate per nanosecond : the
+	 * checks stopping at the first rejection, this order minimizes the expected
+	 * time of a check of the pattern (a field rejecting a bit less often but much
+	 * cheaper goes first)
+	 */
+	public double getPriority(int field) {
+		return getRejectionRate(field) / getCost(field);
+	}
+
+	// stable insertion sort of the fields by decreasing priority
+	private void reorder() {
+
+		double[] priorities = new double[order.length];
+		int field;
+		int k;
+
+		for (int i = 0; i < order.length; i++) {
+			priorities[i] = getPriority(i);
+		}
+
+		for (int i = 1; i < order.length; i++) {
+
+			field = order[i];
+			k = i - 1;
+
+			while (k >= 0 && priorities[order[k]] < priorities[field]) {
+				order[k + 1] = order[k];
+				k--;
+			}
+
+			order[k + 1] = field;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package aliachawaf;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+/*
+ * compares the two input modes of LogFile on a log file (arguments : the file
+ * and its delimiter) : the file is parsed through a BufferedReader, then through
+ * a MappedFileReader, both must give the same records. Prints the best time of
+ * each mode, with the throughput in MB/s
+ */
+public class InputModeBenchmark {
+
+	private static final int NB_ROUNDS = 5;
+
+	public static void main(String[] args) throws IOException {
+
+		Path path = Paths.get(args[0]);
+		char delimiter = (args.length > 1) ? args[1].charAt(0) : ',';
+		double size = Files.size(path) / (1024.0 * 1024.0);
+		long bufferedTime = Long.MAX_VALUE, mappedTime = Long.MAX_VALUE, start;
+		long bufferedHash = 0, mappedHash = 0;
+
+		// the best round is kept, the first ones warm up the JIT
+		for (int round = 0; round < NB_ROUNDS; round++) {
+
+			start = System.nanoTime();
+			bufferedHash = parse(Files.newBufferedReader(path), delimiter);
+			bufferedTime = Math.min(bufferedTime, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			mappedHash = parse(new MappedFileReader(path, 0, StandardCharsets.UTF_8), delimiter);
+			mappedTime = Math.min(mappedTime, System.nanoTime() - start);
+		}
+
+		if (bufferedHash != mappedHash) {
+			throw new IllegalStateException("The input modes don't read the same records");
+		}
+
+		System.out.println(String.format("buffered %.1f ms (%.0f MB/s)  mapped %.1f ms (%.0f MB/s)  x%.2f",
+				bufferedTime / 1e6, size / (bufferedTime / 1e9), mappedTime / 1e6, size / (mappedTime / 1e9),
+				(double) bufferedTime / mappedTime));
+	}
+
+	// parses all the records of the reader, returns a hash of their fields
+	private static long parse(Reader reader, char delimiter) throws IOException {
+
+		CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT.withDelimiter(delimiter));
+		long hash = 0;
+
+		for (CSVRecord line : csvParser) {
+			for (String field : line) {
+				hash = 31 * hash + field.hashCode();
+			}
+		}
+
+		csvParser.close();
+		return hash;
+	}
+}
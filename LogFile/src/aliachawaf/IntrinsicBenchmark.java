@@ -0,0 +1,94 @@
+package aliachawaf;
+
+import java.util.regex.Pattern;
+
+/*
+ * compares the intrinsic matchers to java.util.regex on the definitions of a
+ * regex file (by default regexp-patterns.txt) : for each definition bound to an
+ * intrinsic matcher, checks that both agree on sample field values, then prints
+ * the time per field of each one
+ */
+public class IntrinsicBenchmark {
+
+	// field values as found in snort and firewall logs, matching or not the usual definitions
+	private static final String[] SAMPLES = { "0", "42", "-17", "+3", "65535", "3.14", "-0.5", ".25", "1.", "1e5",
+			"192.168.1.10", "10.0.0.255", "256.1.1.1", "1.2.3", "01.002.3.4", "fe80::1", "2001:db8::8a2e:370:7334",
+			"TCP", "UDP", "allow", "deny_all", "eth0", "host-01.example.com", "example.com.", "-bad.example.com",
+			"a..b", "user.name_01", "GET /index.html HTTP/1.1", "Mozilla/5.0 (X11; Linux x86_64)",
+			"2019-04-01T12:30:45Z", "line\nbreak", "", " ", "\u00e9t\u00e9" };
+
+	private static final int NB_ROUNDS = 5;
+	private static final int NB_ITERATIONS = 200000;
+
+	public static void main(String[] args) {
+
+		ListRegexp listRegexp = new ListRegexp();
+		FieldMatcher matcher;
+		Pattern pattern;
+
+		listRegexp.setIntrinsics(true);
+		listRegexp.setListRegexp((args.length > 0) ? args[0] : "regexp-patterns.txt");
+		listRegexp.replaceNamesByDef();
+
+		for (int id = 0; id < listRegexp.getListRegexp().size(); id++) {
+
+			matcher = listRegexp.getMatcher(id);
+			pattern = listRegexp.getCompiledRegexp()[id];
+
+			if (listRegexp.getDefinitionId(id) != id
+					|| !(matcher instanceof IntrinsicMatcher || matcher instanceof UnionMatcher)) {
+				continue;
+			}
+
+			for (String sample : SAMPLES) {
+				if (matcher.matches(sample) != pattern.matcher(sample).matches()) {
+					throw new IllegalStateException("Intrinsic matcher of " + listRegexp.getListRegexp().get(id).getName()
+							+ " disagrees with the regex on \"" + sample + "\"");
+				}
+			}
+
+			long regexTime = Long.MAX_VALUE, intrinsicTime = Long.MAX_VALUE;
+
+			// the best round is kept, the first ones warm up the JIT
+			for (int round = 0; round < NB_ROUNDS; round++) {
+				regexTime = Math.min(regexTime, timeRegex(pattern));
+				intrinsicTime = Math.min(intrinsicTime, timeMatcher(matcher));
+			}
+
+			System.out.println(String.format("%-12s regex %7.1f ns/field  intrinsic %6.1f ns/field  x%.1f",
+					listRegexp.getListRegexp().get(id).getName(), (double) regexTime / NB_ITERATIONS / SAMPLES.length,
+					(double) intrinsicTime / NB_ITERATIONS / SAMPLES.length, (double) regexTime / intrinsicTime));
+		}
+	}
+
+	private static long timeRegex(Pattern pattern) {
+
+		int nbMatches = 0;
+		long start = System.nanoTime();
+
+		for (int k = 0; k < NB_ITERATIONS; k++) {
+			for (String sample : SAMPLES) {
+				nbMatches += pattern.matcher(sample).matches() ? 1 : 0;
+			}
+		}
+		return consume(nbMatches, System.nanoTime() - start);
+	}
+
+	private static long timeMatcher(FieldMatcher matcher) {
+
+		int nbMatches = 0;
+		long start = System.nanoTime();
+
+		for (int k = 0; k < NB_ITERATIONS; k++) {
+			for (String sample : SAMPLES) {
+				nbMatches += matcher.matches(sample) ? 1 : 0;
+			}
+		}
+		return consume(nbMatches, System.nanoTime() - start);
+	}
+
+	// uses the number of matches so that the JIT can't remove the loops
+	private static long consume(int nbMatches, long time) {
+		return (nbMatches == -1) ? time + 1 : time;
+	}
+}
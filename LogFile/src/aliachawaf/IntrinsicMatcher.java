@@ -0,0 +1,370 @@
+package aliachawaf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * hand-written matchers for the well-known grok definitions : the field is
+ * scanned once, char by char, without any allocation. A definition is bound to
+ * one of them only if its expanded text is the grok one (or an equivalent
+ * spelling listed below), whatever the name it has in the regex file
+ */
+public class IntrinsicMatcher implements FieldMatcher {
+
+	public static final int INT = 0;
+	public static final int NUMBER = 1;
+	public static final int POSINT = 2;
+	public static final int NONNEGINT = 3;
+	public static final int WORD = 4;
+	public static final int NOTSPACE = 5;
+	public static final int USERNAME = 6;
+	public static final int DATA = 7;
+	public static final int IPV4 = 8;
+	public static final int HOSTNAME = 9;
+
+	private static final String[] NAMES = { "INT", "NUMBER", "POSINT", "NONNEGINT", "WORD", "NOTSPACE", "USERNAME",
+			"DATA", "IPV4", "HOSTNAME" };
+
+	private static final String BASE10NUM = "(?<![0-9.+-])(?>[+-]?(?:(?:[0-9]+(?:\\.[0-9]+)?)|(?:\\.[0-9]+)))";
+	private static final String IPV4_OCTET = "(?:[0-1]?[0-9]{1,2}|2[0-4][0-9]|25[0-5])";
+	private static final String IPV4_DEF = "(?<![0-9])(?:" + IPV4_OCTET + "[.]" + IPV4_OCTET + "[.]" + IPV4_OCTET
+			+ "[.]" + IPV4_OCTET + ")(?![0-9])";
+	private static final String HOSTNAME_DEF = "\\b(?:[0-9A-Za-z][0-9A-Za-z-]{0,62})"
+			+ "(?:\\.(?:[0-9A-Za-z][0-9A-Za-z-]{0,62}))*(\\.?|\\b)";
+
+	// definition without its outer (?:...) -> kind of matcher
+	private static final Map<String, Integer> KINDS = new HashMap<String, Integer>();
+
+	static {
+		KINDS.put("[+-]?(?:[0-9]+)", INT);
+		KINDS.put("[+-]?[0-9]+", INT);
+		KINDS.put(BASE10NUM, NUMBER);
+		KINDS.put("\\b(?:[1-9][0-9]*)\\b", POSINT);
+		KINDS.put("[1-9][0-9]*", POSINT);
+		KINDS.put("\\b(?:[0-9]+)\\b", NONNEGINT);
+		KINDS.put("[0-9]+", NONNEGINT);
+		KINDS.put("\\d+", NONNEGINT);
+		KINDS.put("\\b\\w+\\b", WORD);
+		KINDS.put("\\w+", WORD);
+		KINDS.put("\\S+", NOTSPACE);
+		KINDS.put("[a-zA-Z0-9._-]+", USERNAME);
+		KINDS.put(".*", DATA);
+		KINDS.put(".*?", DATA);
+		KINDS.put(IPV4_DEF, IPV4);
+		KINDS.put(HOSTNAME_DEF, HOSTNAME);
+	}
+
+	private int kind;
+
+	private IntrinsicMatcher(int kind) {
+		this.kind = kind;
+	}
+
+	// returns the matcher equivalent to the expanded definition, null if there is none
+	public static IntrinsicMatcher forDefinition(String def) {
+
+		Integer kind = KINDS.get(unwrap(def));
+
+		return (kind == null) ? null : new IntrinsicMatcher(kind);
+	}
+
+	// getter
+	public String getName() {
+		return NAMES[kind];
+	}
+
+	@Override
+	public boolean matches(String field) {
+
+		switch (kind) {
+		case INT:
+			return isInt(field);
+		case NUMBER:
+			return isNumber(field);
+		case POSINT:
+			return field.length() > 0 && field.charAt(0) != '0' && digits(field, 0) == field.length();
+		case NONNEGINT:
+			return field.length() > 0 && digits(field, 0) == field.length();
+		case WORD:
+			return isWord(field);
+		case NOTSPACE:
+			return isNotSpace(field);
+		case USERNAME:
+			return isUsername(field);
+		case DATA:
+			return isData(field);
+		case IPV4:
+			return isIpv4(field);
+		case HOSTNAME:
+			return isHostname(field);
+		default:
+			return false;
+		}
+	}
+
+	// returns the number of ASCII digits starting at index start
+	private static int digits(String field, int start) {
+
+		int i = start;
+
+		while (i < field.length() && field.charAt(i) >= '0' && field.charAt(i) <= '9') {
+			i++;
+		}
+		return i - start;
+	}
+
+	private static int afterSign(String field) {
+		return (field.length() > 0 && (field.charAt(0) == '+' || field.charAt(0) == '-')) ? 1 : 0;
+	}
+
+	// [+-]?[0-9]+
+	private static boolean isInt(String field) {
+
+		int start = afterSign(field);
+		int nbDigits = digits(field, start);
+
+		return nbDigits > 0 && start + nbDigits == field.length();
+	}
+
+	// [+-]?([0-9]+(\.[0-9]+)?|\.[0-9]+) : the atomic group of BASE10NUM doesn't reject
+	// any whole field of this form, the greedy quantifiers find it first
+	private static boolean isNumber(String field) {
+
+		int i = afterSign(field);
+		int nbDigits = digits(field, i);
+
+		i += nbDigits;
+
+		if (i == field.length()) {
+			return nbDigits > 0;
+		}
+		if (field.charAt(i) != '.') {
+			return false;
+		}
+		nbDigits = digits(field, i + 1);
+
+		return nbDigits > 0 && i + 1 + nbDigits == field.length();
+	}
+
+	// \w+ : ASCII letters, digits and '_' (the \b at the edges always hold then)
+	private static boolean isWord(String field) {
+
+		char c;
+
+		for (int i = 0; i < field.length(); i++) {
+			c = field.charAt(i);
+			if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_')) {
+				return false;
+			}
+		}
+		return field.length() > 0;
+	}
+
+	// \S+ : \s is [ \t\n\x0B\f\r]
+	private static boolean isNotSpace(String field) {
+
+		char c;
+
+		for (int i = 0; i < field.length(); i++) {
+			c = field.charAt(i);
+			if (c == ' ' || (c >= '\t' && c <= '\r')) {
+				return false;
+			}
+		}
+		return field.length() > 0;
+	}
+
+	// [a-zA-Z0-9._-]+
+	private static boolean isUsername(String field) {
+
+		char c;
+
+		for (int i = 0; i < field.length(); i++) {
+			c = field.charAt(i);
+			if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.'
+					|| c == '_' || c == '-')) {
+				return false;
+			}
+		}
+		return field.length() > 0;
+	}
+
+	// .* : anything but the line terminators
+	private static boolean isData(String field) {
+
+		char c;
+
+		for (int i = 0; i < field.length(); i++) {
+			c = field.charAt(i);
+			if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// four numbers separated by '.', each one of 1 or 2 digits, or of 3 digits up to 255
+	private static boolean isIpv4(String field) {
+
+		int i = 0;
+		int nbDigits;
+
+		for (int octet = 0; octet < 4; octet++) {
+
+			if (octet > 0) {
+				if (i == field.length() || field.charAt(i) != '.') {
+					return false;
+				}
+				i++;
+			}
+
+			nbDigits = digits(field, i);
+
+			if (nbDigits == 0 || nbDigits > 3) {
+				return false;
+			}
+			if (nbDigits == 3 && (field.charAt(i) - '0') * 100 + (field.charAt(i + 1) - '0') * 10
+					+ (field.charAt(i + 2) - '0') > 255) {
+				return false;
+			}
+			i += nbDigits;
+		}
+		return i == field.length();
+	}
+
+	// labels of 1 to 63 letters, digits or '-' (not first) separated by '.', and an optional final '.'
+	private static boolean isHostname(String field) {
+
+		int i = 0;
+		int j;
+
+		while (i < field.length() && isAlphanumeric(field.charAt(i))) {
+
+			j = i + 1;
+			while (j < field.length() && (isAlphanumeric(field.charAt(j)) || field.charAt(j) == '-')) {
+				j++;
+			}
+
+			if (j - i > 63) {
+				return false;
+			}
+			if (j == field.length() || (field.charAt(j) == '.' && j + 1 == field.length())) {
+				return true;
+			}
+			if (field.charAt(j) != '.') {
+				return false;
+			}
+			i = j + 1;
+		}
+		return false;
+	}
+
+	private static boolean isAlphanumeric(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+	}
+
+	/*
+	 * returns the top-level alternatives of the definition, without their outer
+	 * (?:...), or null if it can't be split safely (inline flags, which would
+	 * spread to the following alternatives, or back references, which count the
+	 * groups)
+	 */
+	public static List<String> branches(String def) {
+
+		String unwrapped = unwrap(def);
+		int[] depths = groupDepths(unwrapped);
+		List<String> branches = new ArrayList<String>();
+		int start = 0;
+
+		if (depths == null) {
+			return null;
+		}
+
+		for (int i = 0; i < unwrapped.length(); i++) {
+
+			if (depths[i] == 0 && unwrapped.charAt(i) == '|') {
+				branches.add(unwrap(unwrapped.substring(start, i)));
+				start = i + 1;
+			} else if (depths[i] >= 0 && unwrapped.startsWith("(?", i) && i + 2 < unwrapped.length()
+					&& (Character.isLetter(unwrapped.charAt(i + 2)) || unwrapped.charAt(i + 2) == '-')) {
+				return null;
+			}
+		}
+		branches.add(unwrap(unwrapped.substring(start)));
+
+		return branches;
+	}
+
+	// removes the (?:...) around the whole definition, if any
+	private static String unwrap(String def) {
+
+		int[] depths;
+		boolean wholeGroup = true;
+
+		while (def.startsWith("(?:") && def.endsWith(")")) {
+
+			depths = groupDepths(def);
+			if (depths == null) {
+				return def;
+			}
+
+			// the group opened by the first '(' must be closed by the last ')'
+			for (int i = 1; i < def.length() && wholeGroup; i++) {
+				wholeGroup = depths[i] != 0;
+			}
+			if (!wholeGroup || depths[def.length() - 1] != 1) {
+				return def;
+			}
+			def = def.substring(3, def.length() - 1);
+		}
+		return def;
+	}
+
+	/*
+	 * returns the nesting depth of the groups at each char of the definition, -1
+	 * for the escaped chars and the chars inside a class. null if the definition uses
+	 * constructs this scan doesn't follow (\Q...\E, nested classes) or back
+	 * references
+	 */
+	private static int[] groupDepths(String def) {
+
+		int[] depths = new int[def.length()];
+		int depth = 0;
+		boolean inClass = false;
+		char c;
+
+		for (int i = 0; i < def.length(); i++) {
+
+			c = def.charAt(i);
+			depths[i] = (inClass) ? -1 : depth;
+
+			if (c == '\\') {
+				if (i + 1 < def.length()) {
+					c = def.charAt(i + 1);
+					if (c == 'Q' || c == 'k' || (c >= '1' && c <= '9')) {
+						return null;
+					}
+					depths[i + 1] = -1;
+				}
+				i++;
+			} else if (inClass) {
+				if (c == '[') {
+					return null;
+				}
+				inClass = c != ']';
+			} else if (c == '[') {
+				inClass = true;
+				if (def.startsWith("[]", i) || def.startsWith("[^]", i)) {
+					return null;
+				}
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			}
+		}
+		return depths;
+	}
+}
@@ -0,0 +1,109 @@
+package aliachawaf;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.csv.CSVRecord;
+
+public class LineResultCache {
+
+	// value cached for a line which doesn't match any pattern
+	public static final int NO_MATCH = -1;
+
+	// recent lines -> index of the first pattern matching them (or NO_MATCH)
+	private Map<Line, Integer> results;
+	private int maxSize;
+
+	private long nbHits;
+	private long nbMisses;
+
+	// constructor : when maxSize lines are cached, the least recently used one is evicted
+	public LineResultCache(final int maxSize) {
+
+		this.results = new LinkedHashMap<Line, Integer>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Line, Integer> eldest) {
+				return size() > maxSize;
+			}
+		};
+		this.maxSize = maxSize;
+		this.nbHits = 0;
+		this.nbMisses = 0;
+	}
+
+	// getters
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getNbHits() {
+		return nbHits;
+	}
+
+	public long getNbMisses() {
+		return nbMisses;
+	}
+
+	/*
+	 * returns the index of the pattern matching the line, NO_MATCH if no pattern
+	 * matches it, or null if the line is not in the cache. Two different lines with
+	 * the same hash are told apart by comparing their fields
+	 */
+	public Integer get(CSVRecord line) {
+
+		Integer result = results.get(new Line(line));
+
+		if (result != null) {
+			nbHits++;
+		} else {
+			nbMisses++;
+		}
+		return result;
+	}
+
+	public void put(CSVRecord line, int result) {
+		results.put(new Line(line), result);
+	}
+
+	// adds the hits and misses of another cache (the one of another thread) to the ones of this cache
+	public void mergeStats(LineResultCache other) {
+		nbHits += other.nbHits;
+		nbMisses += other.nbMisses;
+	}
+
+	@Override
+	public String toString() {
+		return "line cache : " + nbHits + " hits / " + (nbHits + nbMisses) + " lookups";
+	}
+
+	// key of the cache : the fields of a line and their hash
+	private static final class Line {
+
+		private final String[] fields;
+		private final int hash;
+
+		private Line(CSVRecord line) {
+
+			fields = new String[line.size()];
+
+			for (int i = 0; i < fields.length; i++) {
+				fields[i] = line.get(i);
+			}
+			hash = Arrays.hashCode(fields);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Line && hash == ((Line) other).hash && Arrays.equals(fields, ((Line) other).fields);
+		}
+	}
+}
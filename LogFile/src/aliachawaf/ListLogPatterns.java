@@ -5,15 +5,28 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class ListLogPatterns {
 
 	private List<LogPattern> listPatterns;
 
+	// patterns grouped by number of fields : patternsByNbFields.get(n) lists, in the
+	// order of the file, the patterns having n fields
+	private List<List<LogPattern>> patternsByNbFields;
+
+	// dispatchByNbFields.get(n) : dispatch of the patterns having n fields on one of
+	// their columns, null if none is built for them
+	private List<PatternDispatch> dispatchByNbFields;
+
 	// constructor
 	public ListLogPatterns() {
 		listPatterns = new ArrayList<LogPattern>();
+		patternsByNbFields = new ArrayList<List<LogPattern>>();
+		dispatchByNbFields = new ArrayList<PatternDispatch>();
 	}
 
 	// getter
@@ -57,6 +70,7 @@ public class ListLogPatterns {
 				}
 
 				// we add the pattern found to the list
+				pattern.setIndex(this.listPatterns.size());
 				this.listPatterns.add(pattern);
 			}
 
@@ -65,5 +79,102 @@ public class ListLogPatterns {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+
+		this.groupByNbFields();
+	}
+
+	// fill the lists of patterns indexed by their number of fields
+	public void groupByNbFields() {
+
+		int nbFields;
+
+		this.patternsByNbFields = new ArrayList<List<LogPattern>>();
+
+		for (LogPattern pattern : this.listPatterns) {
+
+			nbFields = pattern.getListRegexName().size();
+
+			while (this.patternsByNbFields.size() <= nbFields) {
+				this.patternsByNbFields.add(new ArrayList<LogPattern>());
+			}
+
+			this.patternsByNbFields.get(nbFields).add(pattern);
+		}
+	}
+
+	/*
+	 * for each number of fields, find the column where the patterns expect the most
+	 * selective literal values and dispatch the lines on it (the regex ids have to
+	 * be resolved first)
+	 */
+	public void buildDispatch(ListRegexp listRegexp) {
+
+		this.dispatchByNbFields = new ArrayList<PatternDispatch>();
+
+		for (List<LogPattern> patterns : this.patternsByNbFields) {
+			this.dispatchByNbFields.add(PatternDispatch.build(patterns, listRegexp));
+		}
+	}
+
+	// returns the dispatch of the patterns having the number of fields in parameter, null if none
+	public PatternDispatch getDispatch(int nbFields) {
+
+		if (nbFields >= this.dispatchByNbFields.size()) {
+			return null;
+		}
+
+		return this.dispatchByNbFields.get(nbFields);
+	}
+
+	// returns the patterns having the number of fields in parameter (empty list if there is none)
+	public List<LogPattern> getPatternsByNbFields(int nbFields) {
+
+		if (nbFields >= this.patternsByNbFields.size()) {
+			return Collections.emptyList();
+		}
+
+		return this.patternsByNbFields.get(nbFields);
+	}
+
+	/*
+	 * returns true if we are sure that no line can match both patterns : it is the
+	 * case when, for one field, both patterns expect regex which can't match the
+	 * same value (as two different literals)
+	 */
+	public boolean areDisjoint(LogPattern pattern1, LogPattern pattern2, ListRegexp listRegexp) {
+
+		int[] regexIds1 = pattern1.getRegexIds();
+		int[] regexIds2 = pattern2.getRegexIds();
+
+		if (regexIds1.length != regexIds2.length) {
+			return true;
+		}
+
+		for (int i = 0; i < regexIds1.length; i++) {
+
+			if (listRegexp.areDisjoint(regexIds1[i], regexIds2[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// returns the names of the regex used by at least one pattern
+	public Set<String> getReferencedRegexNames() {
+
+		Set<String> names = new LinkedHashSet<String>();
+
+		for (LogPattern pattern : this.listPatterns) {
+			names.addAll(pattern.getListRegexName());
+		}
+		return names;
+	}
+
+	// resolve the regex names of all the patterns into ids of the list of regex
+	public void resolveRegexIds(ListRegexp listRegexp) {
+
+		for (LogPattern pattern : this.listPatterns) {
+			pattern.resolveRegexIds(listRegexp);
+		}
 	}
 }
@@ -1,7 +1,12 @@
 package aliachawaf;
 
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
@@ -11,16 +16,113 @@ public class ListRegexp {
 
 	private List<Regexp> listRegexp;
 
+	// index normalized name -> id of the regex (its position in listRegexp)
+	private Map<String, Integer> indexByName;
+
+	// registry id -> compiled regex and the matcher checking the fields with it,
+	// built once the definitions are expanded
+	private Pattern[] compiledRegexp;
+	private FieldMatcher[] matchers;
+
+	// "java" : java.util.regex, "dfa" : DfaMatcher when the definition allows it
+	private String regexEngine;
+
+	// time allowed to java.util.regex to match one field in nanoseconds, 0 : no limit
+	private long matchTimeoutNanos;
+
+	// true : the fields are first checked against the facts of the definition (see RegexFacts)
+	private boolean prefilter;
+
+	// true : the well-known grok definitions are checked by IntrinsicMatcher
+	private boolean intrinsics;
+
+	// true : the definitions accepting a finite set of strings are checked by LiteralSetMatcher
+	private boolean literalSets;
+
+	// literalSetsById[id] : the strings accepted by the regex id, null if they are not a finite set
+	private LiteralSetMatcher[] literalSetsById;
+
+	// definitionIds[id] is the id of the first regex having the same definition as the regex id
+	private int[] definitionIds;
+
 	// constructor
 	public ListRegexp() {
 		listRegexp = new ArrayList<Regexp>();
+		indexByName = new HashMap<String, Integer>();
+		compiledRegexp = new Pattern[0];
+		matchers = new FieldMatcher[0];
+		definitionIds = new int[0];
+		regexEngine = "java";
+		matchTimeoutNanos = 0;
+		prefilter = false;
+		intrinsics = false;
+		literalSets = false;
+		literalSetsById = new LiteralSetMatcher[0];
 	}
 
-	// getter
+	// getters
 	public List<Regexp> getListRegexp() {
 		return listRegexp;
 	}
 
+	public Pattern[] getCompiledRegexp() {
+		return compiledRegexp;
+	}
+
+	public String getRegexEngine() {
+		return regexEngine;
+	}
+
+	public long getMatchTimeoutNanos() {
+		return matchTimeoutNanos;
+	}
+
+	public boolean isPrefilter() {
+		return prefilter;
+	}
+
+	public boolean isIntrinsics() {
+		return intrinsics;
+	}
+
+	public boolean isLiteralSets() {
+		return literalSets;
+	}
+
+	// setter : the engine has to be chosen before the definitions are compiled
+	public void setRegexEngine(String regexEngine) {
+
+		if (!regexEngine.equals("java") && !regexEngine.equals("dfa")) {
+			throw new IllegalArgumentException("Unknown regex engine " + regexEngine + " (java or dfa expected)");
+		}
+		this.regexEngine = regexEngine;
+	}
+
+	// setter : the time limit has to be chosen before the definitions are compiled
+	// (0 : no limit)
+	public void setMatchTimeout(long millis) {
+
+		if (millis < 0) {
+			throw new IllegalArgumentException("Negative match timeout " + millis);
+		}
+		this.matchTimeoutNanos = millis * 1000000L;
+	}
+
+	// setter : the prefilter has to be chosen before the definitions are compiled
+	public void setPrefilter(boolean prefilter) {
+		this.prefilter = prefilter;
+	}
+
+	// setter : the intrinsic matchers have to be chosen before the definitions are compiled
+	public void setIntrinsics(boolean intrinsics) {
+		this.intrinsics = intrinsics;
+	}
+
+	// setter : the literal sets have to be chosen before the definitions are compiled
+	public void setLiteralSets(boolean literalSets) {
+		this.literalSets = literalSets;
+	}
+
 	/*
 	 * setter : we read the file of regular expressions entered in parameter,
 	 * collect the regex found (name + def), and then form the list of regex
@@ -51,8 +153,10 @@ public class ListRegexp {
 					// create the regex found with the couple name/def
 					Regexp re = new Regexp(regexp[0], regexp[1]);
 
-					// add the regex to the list
+					// add the regex to the list and index it by its name
+					// (if a name is defined twice, the last definition wins)
 					this.listRegexp.add(re);
+					this.indexByName.put(normalizeName(re.getName()), this.listRegexp.size() - 1);
 				}
 			}
 
@@ -67,44 +171,359 @@ public class ListRegexp {
 	// methods
 	public String getDefinitionByName(String name) {
 
-		// read the list of regex and returns the def corresponding to the name in
-		// parameter
-		String def = null;
+		// look the name up in the index and returns the def corresponding to it
+		int id = this.getIdByName(name);
+
+		return (id == -1) ? null : this.listRegexp.get(id).getDefinition();
+	}
+	
+	// replace all %{NAME} (or %{NAME:alias}) by their regex definition
+	public void replaceNamesByDef() {
 
-		for (Regexp re : this.listRegexp) {
+		boolean[] toExpand = new boolean[this.listRegexp.size()];
 
-			if (re.getName().matches(name.toUpperCase())) {
-				def = re.getDefinition();
+		Arrays.fill(toExpand, true);
+		this.replaceNamesByDef(toExpand);
+	}
+
+	/*
+	 * lazy mode : only expand the regex whose names are in parameter (and the
+	 * regex they refer to), and only compile the former. The other definitions
+	 * stay as they are in the file
+	 */
+	public void replaceNamesByDef(Collection<String> names) {
+		this.replaceNamesByDef(this.idsOf(names));
+	}
+
+	private void replaceNamesByDef(boolean[] toExpand) {
+
+		// expandedDefs[id] is the definition of the regex id once expanded, null until then
+		String[] expandedDefs = new String[this.listRegexp.size()];
+
+		for (int id = 0; id < this.listRegexp.size(); id++) {
+
+			if (toExpand[id]) {
+				this.expandDefinition(id, expandedDefs, new ArrayList<Integer>());
 			}
 		}
-		return def;
+
+		for (int id = 0; id < this.listRegexp.size(); id++) {
+
+			if (expandedDefs[id] != null) {
+				this.listRegexp.get(id).setDefinition(expandedDefs[id]);
+			}
+		}
+
+		this.compileDefinitions(toExpand);
 	}
-	
-	// replace all %{NAME} by their regex definition	
-	public void replaceNamesByDef() {
-		
-		String defToReplace, nameToBeReplaced, name; 
-		int indexEndName;
-		
-		for (Regexp re : this.listRegexp) {
-			
-			while (re.getDefinition().indexOf("%{")!=-1) {
-				
-				indexEndName = re.getDefinition().indexOf("%{")+1;
-				
-				while (re.getDefinition().charAt(indexEndName)!='}') {
-					indexEndName++;
+
+	/*
+	 * expand the definition of the regex id : each name it refers to is expanded
+	 * first (only once, the result is kept in expandedDefs) and then inserted.
+	 * idsInProgress is the chain of regex being expanded, to detect the cycles (a
+	 * name defined twice is two regex, a name always refers to the last one : an
+	 * earlier definition using the name is not a cycle, the last one is)
+	 */
+	private String expandDefinition(int id, String[] expandedDefs, List<Integer> idsInProgress) {
+
+		if (expandedDefs[id] != null) {
+			return expandedDefs[id];
+		}
+
+		String name = this.listRegexp.get(id).getName();
+		String def = this.listRegexp.get(id).getDefinition();
+		StringBuilder expandedDef = new StringBuilder();
+		String nameToBeReplaced;
+		int indexStartName, indexEndName, idToBeReplaced;
+		int indexCopied = 0;
+
+		if (idsInProgress.contains(id)) {
+
+			String cycle = "";
+
+			for (int idInProgress : idsInProgress) {
+				cycle = cycle + this.listRegexp.get(idInProgress).getName() + " -> ";
+			}
+			throw new IllegalArgumentException("Cyclic regex definition : " + cycle + name);
+		}
+
+		idsInProgress.add(id);
+
+		while ((indexStartName = def.indexOf("%{", indexCopied)) != -1) {
+
+			indexEndName = def.indexOf('}', indexStartName);
+
+			if (indexEndName == -1) {
+				throw new IllegalArgumentException("Missing '}' after '%{' in the definition of " + name);
+			}
+
+			// NAME:alias refers to the regex NAME
+			nameToBeReplaced = def.substring(indexStartName + 2, indexEndName).split(":")[0];
+			idToBeReplaced = this.getIdByName(nameToBeReplaced);
+
+			if (idToBeReplaced == -1) {
+				throw new IllegalArgumentException(
+						"Unknown regex name %{" + nameToBeReplaced + "} in the definition of " + name);
+			}
+
+			expandedDef.append(def, indexCopied, indexStartName);
+			expandedDef.append(this.expandDefinition(idToBeReplaced, expandedDefs, idsInProgress));
+			indexCopied = indexEndName + 1;
+		}
+
+		expandedDef.append(def, indexCopied, def.length());
+
+		idsInProgress.remove(idsInProgress.size() - 1);
+		expandedDefs[id] = expandedDef.toString();
+
+		return expandedDefs[id];
+	}
+
+	// compile all the definitions
+	public void compileDefinitions() {
+
+		boolean[] toCompile = new boolean[this.listRegexp.size()];
+
+		Arrays.fill(toCompile, true);
+		this.compileDefinitions(toCompile);
+	}
+
+	// compile only the definitions of the names in parameter (unknown names are ignored)
+	public void compileDefinitions(Collection<String> names) {
+		this.compileDefinitions(this.idsOf(names));
+	}
+
+	// returns toCompile, where toCompile[id] is true if the name of the regex id is in names
+	private boolean[] idsOf(Collection<String> names) {
+
+		boolean[] toCompile = new boolean[this.listRegexp.size()];
+
+		for (String name : names) {
+
+			if (this.getIdByName(name) != -1) {
+				toCompile[this.getIdByName(name)] = true;
+			}
+		}
+		return toCompile;
+	}
+
+	// compile each definition to compile once and register it under the id of its regex
+	// (the regex having the same definition share the same Pattern, the others stay null)
+	private void compileDefinitions(boolean[] toCompile) {
+
+		Map<String, Integer> idsByDef = new HashMap<String, Integer>();
+		Pattern[] patternsById = new Pattern[this.listRegexp.size()];
+		FieldMatcher[] matchersById = new FieldMatcher[this.listRegexp.size()];
+		LiteralSetMatcher[] setsById = new LiteralSetMatcher[this.listRegexp.size()];
+		int[] definitionIdsById = new int[this.listRegexp.size()];
+		Integer definitionId;
+		Regexp re;
+
+		for (int id = 0; id < this.listRegexp.size(); id++) {
+
+			if (!toCompile[id]) {
+				definitionIdsById[id] = id;
+				continue;
+			}
+
+			re = this.listRegexp.get(id);
+			definitionId = idsByDef.get(re.getDefinition());
+
+			if (definitionId == null) {
+				definitionId = id;
+				patternsById[id] = Pattern.compile(re.getDefinition());
+				idsByDef.put(re.getDefinition(), id);
+
+				setsById[id] = LiteralSetMatcher.of(re.getDefinition());
+				matchersById[id] = (this.intrinsics) ? this.intrinsicMatcher(re.getDefinition()) : null;
+
+				if (matchersById[id] == null && this.literalSets) {
+					matchersById[id] = setsById[id];
+				}
+				if (matchersById[id] == null) {
+					matchersById[id] = this.compileMatcher(re.getDefinition(), patternsById[id], this.prefilter);
 				}
-				
-				nameToBeReplaced = re.getDefinition().substring(re.getDefinition().indexOf("%{"), indexEndName+1);
+			} else {
+				patternsById[id] = patternsById[definitionId];
+				matchersById[id] = matchersById[definitionId];
+				setsById[id] = setsById[definitionId];
+			}
+
+			definitionIdsById[id] = definitionId;
+		}
+
+		this.compiledRegexp = patternsById;
+		this.matchers = matchersById;
+		this.literalSetsById = setsById;
+		this.definitionIds = definitionIdsById;
+	}
+
+	// returns the matcher of the definition for the engine chosen
+	private FieldMatcher compileMatcher(String def, Pattern pattern, boolean prefilter) {
+
+		FieldMatcher matcher = new RegexMatcher(pattern, this.matchTimeoutNanos);
+		DfaMatcher dfa;
+		RegexFacts facts;
+
+		// the DFA keeps the regex for the definitions or the fields it doesn't handle
+		if (this.regexEngine.equals("dfa")) {
+			dfa = DfaMatcher.compile(def, matcher);
+			matcher = (dfa != null) ? dfa : matcher;
+		}
+
+		// the cheap checks come first, when they can reject something
+		if (prefilter) {
+			facts = RegexFacts.analyze(def);
+			if (facts != null && !facts.isTrivial()) {
+				matcher = new PrefilterMatcher(facts, matcher);
+			}
+		}
+		return matcher;
+	}
+
+	/*
+	 * returns the intrinsic matcher of the definition, or the union of the
+	 * intrinsic matchers of its alternatives and of the matcher of the other
+	 * alternatives (as IP, IPV6 or IPV4), null if no intrinsic matcher applies
+	 */
+	private FieldMatcher intrinsicMatcher(String def) {
+
+		IntrinsicMatcher intrinsic = IntrinsicMatcher.forDefinition(def);
+		List<String> branches = IntrinsicMatcher.branches(def);
+		List<String> others = new ArrayList<String>();
+		List<FieldMatcher> unionMatchers = new ArrayList<FieldMatcher>();
+		FieldMatcher branchMatcher;
+		String othersDef;
+
+		if (intrinsic != null) {
+			return intrinsic;
+		}
+		if (branches == null || branches.size() < 2) {
+			return null;
+		}
+
+		// an alternative can itself alternate with intrinsic definitions (IPORHOST)
+		for (String branch : branches) {
+
+			branchMatcher = this.intrinsicMatcher(branch);
+
+			if (branchMatcher != null) {
+				unionMatchers.add(branchMatcher);
+			} else {
+				others.add(branch);
+			}
+		}
+
+		if (unionMatchers.isEmpty()) {
+			return null;
+		}
 
-				name = nameToBeReplaced.substring(2, nameToBeReplaced.length()-1);
-				
-				defToReplace = this.getDefinitionByName(name.split(":")[0]);
+		// the other alternatives usually reject the fields the intrinsic matchers
+		// accept (IPV6 an IPv4 address), the prefilter makes it cheap
+		if (!others.isEmpty()) {
+			othersDef = String.join("|", others);
+			unionMatchers.add(this.compileMatcher(othersDef, Pattern.compile(othersDef), true));
+		}
+		return new UnionMatcher(unionMatchers);
+	}
+
+	// returns the id of the first regex having the same definition as the regex id
+	public int getDefinitionId(int id) {
+		return this.definitionIds[id];
+	}
+
+	// returns the compiled regex corresponding to the name in parameter
+	public Pattern getPatternByName(String name) {
+
+		int id = this.getIdByName(name);
+
+		return (id == -1) ? null : this.compiledRegexp[id];
+	}
+
+	// returns the id of the regex corresponding to the name in parameter, -1 if unknown
+	public int getIdByName(String name) {
+
+		Integer id = this.indexByName.get(normalizeName(name));
+
+		return (id == null) ? -1 : id;
+	}
+
+	// names are looked up trimmed and in upper case
+	private static String normalizeName(String name) {
+		return name.trim().toUpperCase();
+	}
+
+	// returns the strings accepted by the regex id if they are a finite set, null otherwise
+	public LiteralSetMatcher getLiteralSet(int id) {
+		return this.literalSetsById[id];
+	}
+
+	/*
+	 * returns true if no field can match both regex : one of them accepts a finite
+	 * set of strings, and none of them is accepted by the other one
+	 */
+	public boolean areDisjoint(int id1, int id2) {
+
+		LiteralSetMatcher set1 = this.literalSetsById[id1];
+		LiteralSetMatcher set2 = this.literalSetsById[id2];
+
+		if (set1 != null && set2 != null) {
+			return !set1.intersects(set2);
+		}
 
-				re.setDefinition(re.getDefinition().replace(nameToBeReplaced, defToReplace));
-			}	
-		}	
+		// the strings of a case insensitive set don't list all the values it accepts
+		if (set1 != null && !set1.isCaseInsensitive() && this.compiledRegexp[id2] != null) {
+			return !this.matchesOne(this.compiledRegexp[id2], set1.getStrings());
+		}
+		if (set2 != null && !set2.isCaseInsensitive() && this.compiledRegexp[id1] != null) {
+			return !this.matchesOne(this.compiledRegexp[id1], set2.getStrings());
+		}
+		return false;
+	}
+
+	private boolean matchesOne(Pattern pattern, String[] values) {
+
+		for (String value : values) {
+			if (pattern.matcher(value).matches()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// returns the matcher of the regex whose id is in parameter
+	public FieldMatcher getMatcher(int id) {
+		return this.matchers[id];
+	}
+
+	// check if the whole field matches the regex whose id is in parameter
+	public boolean matches(int id, String field) {
+		return this.matchers[id].matches(field);
+	}
+
+	// returns the number of fields rejected by the prefilter of each definition
+	public String prefilterStats() {
+
+		long nbChecks = 0, nbRejections = 0;
+		String buffer = "";
+		PrefilterMatcher prefilterMatcher;
+
+		for (int id = 0; id < this.matchers.length; id++) {
+
+			// a definition shared by several names is counted once
+			if (this.definitionIds[id] != id || !(this.matchers[id] instanceof PrefilterMatcher)) {
+				continue;
+			}
+			prefilterMatcher = (PrefilterMatcher) this.matchers[id];
+
+			if (prefilterMatcher.getNbChecks() > 0) {
+				nbChecks += prefilterMatcher.getNbChecks();
+				nbRejections += prefilterMatcher.getNbRejections();
+				buffer = buffer + "\n  " + this.listRegexp.get(id).getName() + " : "
+						+ prefilterMatcher.getNbRejections() + " / " + prefilterMatcher.getNbChecks();
+			}
+		}
+		return "prefilter : " + nbRejections + " rejections / " + nbChecks + " checks" + buffer;
 	}
 
 	@Override
@@ -0,0 +1,373 @@
+package aliachawaf;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/*
+ * matcher of a definition accepting a finite set of strings, as (TCP|UDP|ICMP)
+ * or (?i)(allow|deny|drop) : the field is looked up in a hash table, or in a
+ * trie when the set is large. With (?i), the case of the ASCII letters is
+ * ignored, and only of them, as java.util.regex does without UNICODE_CASE
+ */
+public class LiteralSetMatcher implements FieldMatcher {
+
+	// largest set of strings accepted, and largest class enumerated in it
+	private static final int MAX_STRINGS = 10000;
+	private static final int MAX_CLASS_SIZE = 64;
+
+	// beyond this size, the strings are stored in a trie
+	private static final int TRIE_THRESHOLD = 64;
+
+	private String[] strings;
+	private boolean caseInsensitive;
+	private int minLength;
+	private int maxLength;
+
+	// open addressing hash table of the strings (null if the trie is used)
+	private String[] table;
+
+	/*
+	 * trie : the children of the node n are targets[k] for k from starts[n] to
+	 * starts[n + 1] - 1, reached by the chars labels[k] (sorted). The node 0 is
+	 * the root
+	 */
+	private int[] starts;
+	private char[] labels;
+	private int[] targets;
+	private boolean[] terminals;
+
+	private LiteralSetMatcher(Set<String> strings, boolean caseInsensitive) {
+
+		this.strings = strings.toArray(new String[strings.size()]);
+		this.caseInsensitive = caseInsensitive;
+		this.minLength = Integer.MAX_VALUE;
+		this.maxLength = 0;
+
+		for (String s : this.strings) {
+			this.minLength = Math.min(this.minLength, s.length());
+			this.maxLength = Math.max(this.maxLength, s.length());
+		}
+
+		if (this.strings.length > TRIE_THRESHOLD) {
+			this.buildTrie();
+		} else {
+			this.buildTable();
+		}
+	}
+
+	/*
+	 * returns the matcher of the definition if it accepts a finite set of strings
+	 * (of limited size), null otherwise. The definition may start with (?i), or be
+	 * entirely in a (?i:...) group
+	 */
+	public static LiteralSetMatcher of(String def) {
+
+		boolean caseInsensitive = false;
+		String body = def;
+		List<String> strings;
+		Set<String> folded = new LinkedHashSet<String>();
+
+		if (def.startsWith("(?i)")) {
+			caseInsensitive = true;
+			body = def.substring(4);
+		} else if (def.startsWith("(?i:") && def.endsWith(")")) {
+			// the parser rejects the body if this ')' doesn't close the (?i: group
+			caseInsensitive = true;
+			body = def.substring(4, def.length() - 1);
+		}
+
+		try {
+			strings = strings(RegexParser.parseFullMatch(body));
+		} catch (UnsupportedRegexException e) {
+			return null;
+		}
+
+		if (strings == null) {
+			return null;
+		}
+
+		for (String s : strings) {
+			folded.add(caseInsensitive ? fold(s) : s);
+		}
+		return new LiteralSetMatcher(folded, caseInsensitive);
+	}
+
+	// getters
+	public String[] getStrings() {
+		return strings;
+	}
+
+	public boolean isCaseInsensitive() {
+		return caseInsensitive;
+	}
+
+	@Override
+	public boolean matches(String field) {
+
+		if (field.length() < minLength || field.length() > maxLength) {
+			return false;
+		}
+		return (table != null) ? this.inTable(field) : this.inTrie(field);
+	}
+
+	// returns true if this set and the one in parameter have a common string
+	public boolean intersects(LiteralSetMatcher other) {
+
+		// the strings of a case sensitive set are real values, the ones of a case
+		// insensitive set stand for all their case variants
+		LiteralSetMatcher values = this.caseInsensitive ? other : this;
+		LiteralSetMatcher set = (values == this) ? other : this;
+
+		for (String s : values.strings) {
+			if (set.matches(s)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// returns the strings of the node, null if they are too many or infinite
+	private static List<String> strings(RegexNode node) {
+
+		List<String> strings = new ArrayList<String>();
+		List<String> childStrings;
+		int[] ranges;
+
+		switch (node.getType()) {
+
+		case RegexNode.CHARS:
+			ranges = node.getRanges();
+			for (int k = 0; k < ranges.length; k += 2) {
+				if (strings.size() + ranges[k + 1] - ranges[k] + 1 > MAX_CLASS_SIZE) {
+					return null;
+				}
+				for (int c = ranges[k]; c <= ranges[k + 1]; c++) {
+					strings.add(String.valueOf((char) c));
+				}
+			}
+			return strings;
+
+		case RegexNode.CONCAT:
+			strings.add("");
+			for (RegexNode child : node.getChildren()) {
+				childStrings = strings(child);
+				strings = (childStrings == null) ? null : concat(strings, childStrings);
+				if (strings == null) {
+					return null;
+				}
+			}
+			return strings;
+
+		case RegexNode.ALTERNATION:
+			for (RegexNode child : node.getChildren()) {
+				childStrings = strings(child);
+				if (childStrings == null || strings.size() + childStrings.size() > MAX_STRINGS) {
+					return null;
+				}
+				strings.addAll(childStrings);
+			}
+			return strings;
+
+		case RegexNode.REPEAT:
+			childStrings = strings(node.getChildren().get(0));
+			if (childStrings == null || node.getMax() == -1) {
+				return null;
+			}
+
+			// the strings of child{k} for k from min to max
+			List<String> repeated = new ArrayList<String>();
+			repeated.add("");
+
+			for (int k = 0; k <= node.getMax(); k++) {
+				if (k >= node.getMin()) {
+					strings.addAll(repeated);
+					if (strings.size() > MAX_STRINGS) {
+						return null;
+					}
+				}
+				if (k < node.getMax()) {
+					repeated = concat(repeated, childStrings);
+					if (repeated == null) {
+						return null;
+					}
+				}
+			}
+			return strings;
+
+		case RegexNode.EMPTY:
+			strings.add("");
+			return strings;
+
+		default:
+			return null;
+		}
+	}
+
+	// returns each string of prefixes followed by each string of suffixes, null if too many
+	private static List<String> concat(List<String> prefixes, List<String> suffixes) {
+
+		List<String> strings = new ArrayList<String>();
+
+		if ((long) prefixes.size() * suffixes.size() > MAX_STRINGS) {
+			return null;
+		}
+		for (String prefix : prefixes) {
+			for (String suffix : suffixes) {
+				strings.add(prefix + suffix);
+			}
+		}
+		return strings;
+	}
+
+	private char fold(char c) {
+		return (caseInsensitive && c >= 'A' && c <= 'Z') ? (char) (c + 'a' - 'A') : c;
+	}
+
+	// returns the string with its ASCII letters in lower case
+	public static String fold(String s) {
+
+		StringBuilder sb = new StringBuilder(s.length());
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			sb.append((c >= 'A' && c <= 'Z') ? (char) (c + 'a' - 'A') : c);
+		}
+		return sb.toString();
+	}
+
+	// hash of the field once folded, as String.hashCode, spread over the low bits
+	private int hash(String field) {
+
+		int h = 0;
+
+		for (int i = 0; i < field.length(); i++) {
+			h = 31 * h + this.fold(field.charAt(i));
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private void buildTable() {
+
+		int size = Integer.highestOneBit(Math.max(strings.length, 1) * 4);
+		int k;
+
+		this.table = new String[size];
+
+		for (String s : strings) {
+			k = this.hash(s) & (size - 1);
+			while (table[k] != null) {
+				k = (k + 1) & (size - 1);
+			}
+			table[k] = s;
+		}
+	}
+
+	private boolean inTable(String field) {
+
+		int k = this.hash(field) & (table.length - 1);
+
+		while (table[k] != null) {
+			if (this.equalsFolded(table[k], field)) {
+				return true;
+			}
+			k = (k + 1) & (table.length - 1);
+		}
+		return false;
+	}
+
+	private boolean equalsFolded(String s, String field) {
+
+		if (s.length() != field.length()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) != this.fold(field.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void buildTrie() {
+
+		List<TreeMap<Character, Integer>> children = new ArrayList<TreeMap<Character, Integer>>();
+		List<Boolean> isTerminal = new ArrayList<Boolean>();
+		int node, nbLabels = 0;
+		Integer child;
+
+		children.add(new TreeMap<Character, Integer>());
+		isTerminal.add(false);
+
+		for (String s : strings) {
+			node = 0;
+			for (int i = 0; i < s.length(); i++) {
+				child = children.get(node).get(s.charAt(i));
+				if (child == null) {
+					child = children.size();
+					children.get(node).put(s.charAt(i), child);
+					children.add(new TreeMap<Character, Integer>());
+					isTerminal.add(false);
+					nbLabels++;
+				}
+				node = child;
+			}
+			isTerminal.set(node, true);
+		}
+
+		// flatten the children of each node, in the order of the nodes
+		this.starts = new int[children.size() + 1];
+		this.labels = new char[nbLabels];
+		this.targets = new int[nbLabels];
+		this.terminals = new boolean[children.size()];
+		int k = 0;
+
+		for (node = 0; node < children.size(); node++) {
+			starts[node] = k;
+			terminals[node] = isTerminal.get(node);
+
+			Iterator<Character> it = children.get(node).keySet().iterator();
+			while (it.hasNext()) {
+				labels[k] = it.next();
+				targets[k] = children.get(node).get(labels[k]);
+				k++;
+			}
+		}
+		starts[children.size()] = k;
+	}
+
+	private boolean inTrie(String field) {
+
+		int node = 0;
+		int lo, hi, mid, found;
+		char c;
+
+		for (int i = 0; i < field.length(); i++) {
+
+			c = this.fold(field.charAt(i));
+			lo = starts[node];
+			hi = starts[node + 1] - 1;
+			found = -1;
+
+			// binary search of the char among the labels of the children
+			while (lo <= hi && found == -1) {
+				mid = (lo + hi) >>> 1;
+				if (labels[mid] < c) {
+					lo = mid + 1;
+				} else if (labels[mid] > c) {
+					hi = mid - 1;
+				} else {
+					found = mid;
+				}
+			}
+			if (found == -1) {
+				return false;
+			}
+			node = targets[found];
+		}
+		return terminals[node];
+	}
+}
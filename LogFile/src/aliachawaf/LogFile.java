@@ -2,10 +2,26 @@ package aliachawaf;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.regex.Pattern;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -14,13 +30,57 @@ import org.apache.commons.csv.CSVRecord;
 
 public class LogFile {
 
+	// number of records read at once, and analysed by one thread in parallel mode
+	private static final int BATCH_SIZE = 1024;
+
 	private String fileName;
 	private ListPatternLineMatching list;
 
+	// adaptive mode : the fields of each pattern are checked by decreasing rejection rate per nanosecond
+	private boolean adaptiveFieldOrder;
+
+	// optional cache of the results of the regex on the values met on previous lines
+	private FieldValueCache fieldValueCache;
+
+	// optional cache of the results of the recent lines, for the lines repeating identically
+	private LineResultCache lineResultCache;
+
+	// frequency mode (profile != null) : the most frequent patterns are tried first
+	private PatternProfile patternProfile;
+
+	// multi-regex mode : the patterns are found by intersecting, column by column, the
+	// patterns accepting the field (see PatternSetMatcher)
+	private boolean multiRegexMatching;
+
+	// the fields whose regex ran out of time during the last comparison
+	private MatchTimeoutReport matchTimeoutReport;
+
+	// number of CSV records analysed by the last comparison
+	private int nbLinesProcessed;
+
+	// number of threads analysing the records (they share the compiled rule set)
+	private int nbThreads;
+
+	// "buffered" : the file is read by a BufferedReader, "mapped" : by a MappedFileReader
+	private String inputMode;
+
+	// charset of the file : UTF-8, or ISO-8859-1 (US-ASCII) read one byte per char
+	private Charset inputCharset;
+
 	// constructor
 	public LogFile(String fileName, ListPatternLineMatching list) {
 		this.fileName = fileName;
 		this.list = list;
+		this.adaptiveFieldOrder = false;
+		this.fieldValueCache = null;
+		this.lineResultCache = null;
+		this.patternProfile = null;
+		this.multiRegexMatching = false;
+		this.matchTimeoutReport = new MatchTimeoutReport();
+		this.nbLinesProcessed = 0;
+		this.nbThreads = 1;
+		this.inputMode = "buffered";
+		this.inputCharset = StandardCharsets.UTF_8;
 	}
 
 	// getters
@@ -32,72 +92,146 @@ public class LogFile {
 		return list;
 	}
 
-	public void compare(ListRegexp listRegexp, char delimiter, ListLogPatterns listLogPatterns, int startLine,
-			int finishLine) {
+	public boolean isAdaptiveFieldOrder() {
+		return adaptiveFieldOrder;
+	}
 
-		boolean fieldMatches = true;
-		boolean lineMatches = true;
-		boolean patternMatches = false;
-		int lineNumber = 0;
+	public boolean isMultiRegexMatching() {
+		return multiRegexMatching;
+	}
+
+	public PatternProfile getPatternProfile() {
+		return patternProfile;
+	}
+
+	public FieldValueCache getFieldValueCache() {
+		return fieldValueCache;
+	}
+
+	public LineResultCache getLineResultCache() {
+		return lineResultCache;
+	}
+
+	public MatchTimeoutReport getMatchTimeoutReport() {
+		return matchTimeoutReport;
+	}
+
+	public int getNbLinesProcessed() {
+		return nbLinesProcessed;
+	}
+
+	public String getInputMode() {
+		return inputMode;
+	}
+
+	public Charset getInputCharset() {
+		return inputCharset;
+	}
+
+	public int getNbThreads() {
+		return nbThreads;
+	}
 
-		String regexNameExpected;
-		String regexDefExpected;
+	// setters
+	public void setAdaptiveFieldOrder(boolean adaptiveFieldOrder) {
+		this.adaptiveFieldOrder = adaptiveFieldOrder;
+	}
+
+	// the multi-regex mode replaces the dispatch and the frequency order
+	public void setMultiRegexMatching(boolean multiRegexMatching) {
+		this.multiRegexMatching = multiRegexMatching;
+	}
+
+	public void setInputMode(String inputMode) {
+
+		if (!inputMode.equals("buffered") && !inputMode.equals("mapped")) {
+			throw new IllegalArgumentException("Unknown input mode " + inputMode + " (buffered or mapped expected)");
+		}
+		this.inputMode = inputMode;
+	}
+
+	public void setInputCharset(String inputCharset) {
+
+		Charset charset;
 
 		try {
-			Reader reader = Files.newBufferedReader(Paths.get(fileName));
-			CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT.withDelimiter(delimiter));
+			charset = Charset.forName(inputCharset);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown input charset " + inputCharset + " (UTF-8 or ISO-8859-1 expected)");
+		}
 
-			// we analyse each line of logfile
-			for (CSVRecord line : csvParser) {
+		if (!charset.equals(StandardCharsets.UTF_8) && !charset.equals(StandardCharsets.ISO_8859_1)
+				&& !charset.equals(StandardCharsets.US_ASCII)) {
+			throw new IllegalArgumentException("Unsupported input charset " + inputCharset
+					+ " (UTF-8 or ISO-8859-1 expected)");
+		}
+		this.inputCharset = charset;
+	}
 
-				if (lineNumber >= startLine - 1 && lineNumber < finishLine) {
-					System.out.println(lineNumber);
-					// make the comparison for each pattern
-					for (LogPattern pattern : listLogPatterns.getListPatterns()) {
+	public void setFieldValueCache(FieldValueCache fieldValueCache) {
+		this.fieldValueCache = fieldValueCache;
+	}
 
-						// we compare only if it doesn't match a pattern yet and if the line has the
-						// same number of fields than the pattern
-						if (!patternMatches && line.size() == pattern.getListRegexName().size()) {
+	public void setLineResultCache(LineResultCache lineResultCache) {
+		this.lineResultCache = lineResultCache;
+	}
 
-							// for each field of the current line, we check if it matches the regex expected
-							for (int i = 0; i < line.size(); i++) {
+	public void setPatternProfile(PatternProfile patternProfile) {
+		this.patternProfile = patternProfile;
+	}
 
-								regexNameExpected = pattern.getListRegexName().get(i);
+	public void setNbThreads(int nbThreads) {
 
-								// get the definition of the regex from its name
-								regexDefExpected = listRegexp.getDefinitionByName(regexNameExpected);
+		if (nbThreads < 1) {
+			throw new IllegalArgumentException("The number of threads must be at least 1 (" + nbThreads + " given)");
+		}
+		this.nbThreads = nbThreads;
+	}
 
-								// compare the current field of the line with the pattern's regex expected
-								fieldMatches = Pattern.matches(regexDefExpected, line.get(i));
+	/*
+	 * compare the records numbered from startLine to finishLine (both included)
+	 * with the patterns. The number of records analysed is then given by
+	 * getNbLinesProcessed, finishLine can be Integer.MAX_VALUE to read the whole file
+	 */
+	public void compare(ListRegexp listRegexp, char delimiter, ListLogPatterns listLogPatterns, int startLine,
+			int finishLine) {
 
-								if (!fieldMatches) {
+		int lineNumber = 0;
 
-									// if one field doesn't match so the entire line doesn't match too.
-									lineMatches = false;
-								}
-							}
+		this.nbLinesProcessed = 0;
 
-							if (lineMatches) {
-								this.list.incrementNbLinesMatching(pattern);
-								patternMatches = true;
-							}
+		// the regex and the patterns are compiled once (with the tables of the mode used), the lines
+		// are analysed with it
+		CompiledRuleSet ruleSet = CompiledRuleSet.compile(listRegexp, listLogPatterns, this.multiRegexMatching,
+				this.patternProfile != null && !this.multiRegexMatching);
+		RuleSetAnalysis analysis = this.newAnalysis(ruleSet, this.fieldValueCache, this.lineResultCache);
 
-							// for the next line to analyse, we give initial values
-							lineMatches = true;
-							fieldMatches = true;
-						}
-					}
+		this.matchTimeoutReport = analysis.getMatchTimeoutReport();
 
-					// we record the line in a CSV file if it doesn't match with any pattern
-					if (!patternMatches) {
+		try {
+			Path path = Paths.get(fileName);
+			RecordScanner recordScanner = new RecordScanner(delimiter, this.inputCharset);
+			Reader reader;
 
-						this.recordNonMatchingLines(line);
+			// the records before startLine are skipped on the bytes of the file, without being parsed
+			if (startLine > 1) {
 
-					} else {
-						patternMatches = false; // initial value
-					}
+				if (!recordScanner.findRecord(path, startLine)) {
+					return;
 				}
-				lineNumber++;
+				lineNumber = startLine - 1;
+			}
+
+			reader = this.openReader(path, recordScanner.getByteOffset());
+
+			CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT.withDelimiter(delimiter),
+					recordScanner.getCharOffset(), lineNumber + 1);
+
+			// we analyse each line of logfile, until finishLine
+			if (this.nbThreads == 1) {
+				this.analyse(csvParser.iterator(), lineNumber, finishLine, analysis);
+			} else {
+				this.analyseInParallel(csvParser.iterator(), lineNumber, finishLine, analysis);
 			}
 
 			csvParser.close();
@@ -111,6 +245,161 @@ public class LogFile {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+
+		// the number of lines matching each pattern
+		for (PatternLineMatching l : this.list.getListPatternLineMatching()) {
+			l.setNbLineMatching(l.getNbLineMatching() + analysis.getNbLinesMatching(l.getPattern().getIndex()));
+		}
+	}
+
+	// returns an analysis of the rule set with the options of this file and the caches in parameter
+	private RuleSetAnalysis newAnalysis(CompiledRuleSet ruleSet, FieldValueCache fieldValueCache,
+			LineResultCache lineResultCache) {
+
+		RuleSetAnalysis analysis = ruleSet.newAnalysis();
+
+		analysis.setAdaptiveFieldOrder(this.adaptiveFieldOrder);
+		analysis.setFieldValueCache(fieldValueCache);
+		analysis.setLineResultCache(lineResultCache);
+		analysis.setPatternProfile(this.patternProfile);
+		analysis.setMultiRegexMatching(this.multiRegexMatching);
+
+		return analysis;
+	}
+
+	// analyse the records following the record lineNumber, until finishLine
+	private void analyse(Iterator<CSVRecord> records, int lineNumber, int finishLine, RuleSetAnalysis analysis) {
+
+		List<CSVRecord> batch;
+
+		while (!(batch = this.nextBatch(records, lineNumber, finishLine)).isEmpty()) {
+
+			for (CSVRecord line : batch) {
+				analysis.analyse(line);
+			}
+
+			// we record the lines in a CSV file if they don't match with any pattern
+			this.recordNonMatchingLines(analysis.getNonMatchingLines());
+			analysis.clearNonMatchingLines();
+		}
+	}
+
+	/*
+	 * same as analyse, but the batches of records are analysed by nbThreads
+	 * threads sharing the rule set, each one with its own analysis (and its own
+	 * caches, of the same size as the ones of this file). The non-matching lines
+	 * are recorded in the order of the file, then the analyses of the threads are
+	 * merged into the one in parameter
+	 */
+	private void analyseInParallel(Iterator<CSVRecord> records, int lineNumber, int finishLine,
+			RuleSetAnalysis analysis) {
+
+		ExecutorService executor = Executors.newFixedThreadPool(this.nbThreads);
+		BlockingQueue<RuleSetAnalysis> analyses = new ArrayBlockingQueue<RuleSetAnalysis>(this.nbThreads);
+		Deque<Future<List<CSVRecord>>> batchesRunning = new ArrayDeque<Future<List<CSVRecord>>>();
+		List<RuleSetAnalysis> threadAnalyses = new ArrayList<RuleSetAnalysis>();
+		List<CSVRecord> batch;
+
+		analyses.add(analysis);
+
+		for (int t = 1; t < this.nbThreads; t++) {
+			analyses.add(this.newAnalysis(analysis.getRuleSet(),
+					(this.fieldValueCache == null) ? null
+							: new FieldValueCache(this.fieldValueCache.getMaxSizeByColumn()),
+					(this.lineResultCache == null) ? null : new LineResultCache(this.lineResultCache.getMaxSize())));
+		}
+		threadAnalyses.addAll(analyses);
+
+		try {
+			while (!(batch = this.nextBatch(records, lineNumber, finishLine)).isEmpty()) {
+
+				final List<CSVRecord> batchRead = batch;
+				batchesRunning.add(executor.submit(() -> analyseBatch(analyses, batchRead)));
+
+				// at most 2 batches by thread are read in advance
+				if (batchesRunning.size() >= 2 * this.nbThreads) {
+					this.recordNonMatchingLines(batchesRunning.poll().get());
+				}
+			}
+
+			while (!batchesRunning.isEmpty()) {
+				this.recordNonMatchingLines(batchesRunning.poll().get());
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Analysis of the records failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		for (RuleSetAnalysis threadAnalysis : threadAnalyses) {
+
+			if (threadAnalysis != analysis) {
+				analysis.merge(threadAnalysis);
+			}
+		}
+	}
+
+	// analyse the batch with an analysis free, returns the lines of the batch matching no pattern
+	private static List<CSVRecord> analyseBatch(BlockingQueue<RuleSetAnalysis> analyses, List<CSVRecord> batch)
+			throws InterruptedException {
+
+		RuleSetAnalysis analysis = analyses.take();
+
+		try {
+			for (CSVRecord line : batch) {
+				analysis.analyse(line);
+			}
+
+			List<CSVRecord> nonMatchingLines = new ArrayList<CSVRecord>(analysis.getNonMatchingLines());
+			analysis.clearNonMatchingLines();
+
+			return nonMatchingLines;
+
+		} finally {
+			analyses.put(analysis);
+		}
+	}
+
+	// returns the next records (BATCH_SIZE at most), empty once finishLine or the end of the file is reached
+	private List<CSVRecord> nextBatch(Iterator<CSVRecord> records, int lineNumber, int finishLine) {
+
+		List<CSVRecord> batch = new ArrayList<CSVRecord>(BATCH_SIZE);
+
+		while (batch.size() < BATCH_SIZE && lineNumber + this.nbLinesProcessed < finishLine && records.hasNext()) {
+
+			System.out.println(lineNumber + this.nbLinesProcessed);
+			batch.add(records.next());
+			this.nbLinesProcessed++;
+		}
+		return batch;
+	}
+
+	// returns a reader of the file (decoded with inputCharset) from the byte position in parameter
+	private Reader openReader(Path path, long position) throws IOException {
+
+		if (this.inputMode.equals("mapped")) {
+			return new MappedFileReader(path, position, this.inputCharset);
+		}
+
+		if (position == 0) {
+			return Files.newBufferedReader(path, this.inputCharset);
+		}
+
+		FileChannel channel = FileChannel.open(path);
+		channel.position(position);
+
+		return Channels.newReader(channel, this.inputCharset.newDecoder(), -1);
+	}
+
+	// APPEND the lines in parameter in a csv file
+	private void recordNonMatchingLines(List<CSVRecord> linesNonMatching) {
+
+		for (CSVRecord line : linesNonMatching) {
+			this.recordNonMatchingLines(line);
+		}
 	}
 
 	// APPEND the line in parameter in a csv file
@@ -146,13 +435,38 @@ public class LogFile {
 		}
 	}
 
+	/*
+	 * fast estimate of the number of lines : the line feeds are counted on the
+	 * bytes of the file, without decoding nor parsing it. A quoted field spanning
+	 * several lines counts as several lines, the exact number of CSV records is
+	 * given by compare (see getNbLinesProcessed)
+	 */
 	public int nbLinesLogFile() {
 
 		int lineProcessed = 0;
+		byte[] buffer = new byte[1 << 16];
+		byte last = '\n';
+		int n;
 
 		try {
+			InputStream in = Files.newInputStream(Paths.get(fileName));
+
+			while ((n = in.read(buffer)) > 0) {
+
+				for (int k = 0; k < n; k++) {
+					if (buffer[k] == '\n') {
+						lineProcessed++;
+					}
+				}
+				last = buffer[n - 1];
+			}
 
-			lineProcessed = (int) Files.lines(Paths.get(fileName)).count();
+			in.close();
+
+			// the last line may have no line feed
+			if (last != '\n') {
+				lineProcessed++;
+			}
 
 		} catch (java.nio.file.NoSuchFileException e) {
 			System.out.print("File not found ! Please check your input (path) and re-enter it : ");
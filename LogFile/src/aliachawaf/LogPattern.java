@@ -5,6 +5,7 @@ import java.util.List;
 
 public class LogPattern {
 
+	private String logIdentifier;
 	private String[] logInfos;
 	/* logInfos[0] is the log type ;
 	 * logInfos[1] is the number of fields ;
@@ -12,14 +13,25 @@ public class LogPattern {
 	 */
 	private List<String> listRegexName;
 
+	// ids of the regex names in the ListRegexp, resolved once the files are loaded
+	private int[] regexIds;
+
+	// position of the pattern in the file of patterns
+	private int index;
+
 	// constructor
 	public LogPattern(String logIdentifier) {
+		this.logIdentifier = logIdentifier;
 		logInfos = new String[3];
 		listRegexName = new ArrayList<String>();
 		this.setLogInfos(logIdentifier);
 	}
 
 	// getters
+	public String getLogIdentifier() {
+		return logIdentifier;
+	}
+
 	public List<String> getListRegexName() {
 		return listRegexName;
 	}
@@ -28,6 +40,36 @@ public class LogPattern {
 		return logInfos;
 	}
 
+	public int[] getRegexIds() {
+		return regexIds;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
+	// replace each regex name of the pattern by its id in the list of regex
+	public void resolveRegexIds(ListRegexp listRegexp) {
+
+		int[] ids = new int[listRegexName.size()];
+
+		for (int i = 0; i < ids.length; i++) {
+
+			ids[i] = listRegexp.getIdByName(listRegexName.get(i));
+
+			if (ids[i] == -1) {
+				throw new IllegalArgumentException("Unknown regex name %{" + listRegexName.get(i) + "} in pattern "
+						+ logInfos[0] + logInfos[2]);
+			}
+		}
+
+		this.regexIds = ids;
+	}
+
 	// setter
 	public void setLogInfos(String logIdentifier) {
 
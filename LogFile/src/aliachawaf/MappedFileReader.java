@@ -0,0 +1,160 @@
+package aliachawaf;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * reads a file through memory mappings (FileChannel.map) : the bytes are decoded
+ * from the mapped region straight into the buffer of the caller (the one of
+ * CSVParser), without the read calls and the intermediate byte and char buffers
+ * of an InputStreamReader. The file is mapped by windows of WINDOW_SIZE bytes,
+ * so it can be bigger than 2 GB.
+ *
+ * The ASCII bytes are read as chars directly, the other ones are decoded by the
+ * decoder of the charset (UTF-8 : malformed input is reported as with
+ * Files.newBufferedReader). In ISO-8859-1, each byte is a char
+ */
+public class MappedFileReader extends Reader {
+
+	private static final long WINDOW_SIZE = 1L << 26;
+
+	private FileChannel channel;
+	private long fileSize;
+	private boolean latin1;
+	private CharsetDecoder decoder;
+
+	// current window, and position in the file of its first byte
+	private MappedByteBuffer window;
+	private long windowStart;
+
+	// second char of a surrogate pair which didn't fit in the buffer of the caller (0 : none)
+	private char pendingChar;
+
+	// constructors : the file is read from the byte position in parameter
+	public MappedFileReader(Path path) throws IOException {
+		this(path, 0, StandardCharsets.UTF_8);
+	}
+
+	public MappedFileReader(Path path, long position, Charset charset) throws IOException {
+
+		if (!charset.equals(StandardCharsets.UTF_8) && !charset.equals(StandardCharsets.ISO_8859_1)
+				&& !charset.equals(StandardCharsets.US_ASCII)) {
+			throw new IllegalArgumentException("Unsupported charset " + charset + " (UTF-8 or ISO-8859-1 expected)");
+		}
+
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		this.fileSize = channel.size();
+		this.latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+		this.decoder = charset.newDecoder();
+		this.pendingChar = 0;
+		this.map(Math.min(position, fileSize));
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+
+		int n = 0;
+		byte b;
+
+		if (len == 0) {
+			return 0;
+		}
+
+		if (pendingChar != 0) {
+			cbuf[off] = pendingChar;
+			pendingChar = 0;
+			n = 1;
+		}
+
+		while (n < len) {
+
+			if (!window.hasRemaining()) {
+				if (windowStart + window.limit() >= fileSize) {
+					break;
+				}
+				this.map(windowStart + window.limit());
+			}
+
+			// ASCII (or Latin-1) bytes : one char each
+			int position = window.position();
+			int end = Math.min(window.limit(), position + len - n);
+
+			while (position < end) {
+
+				b = window.get(position);
+
+				if (b < 0 && !latin1) {
+					break;
+				}
+				cbuf[off + n++] = (char) (b & 0xFF);
+				position++;
+			}
+			window.position(position);
+
+			if (n < len && window.hasRemaining()) {
+				n = this.decode(cbuf, off, n, len);
+			}
+		}
+
+		return (n == 0) ? -1 : n;
+	}
+
+	/*
+	 * decodes the bytes from the current one (not ASCII) into cbuf, from off + n,
+	 * returns the new number of chars in cbuf
+	 */
+	private int decode(char[] cbuf, int off, int n, int len) throws IOException {
+
+		CharBuffer out = CharBuffer.wrap(cbuf, off + n, len - n);
+		boolean lastWindow = windowStart + window.limit() >= fileSize;
+		CoderResult result = decoder.decode(window, out, lastWindow);
+
+		if (result.isError()) {
+			result.throwException();
+		}
+
+		n = out.position() - off;
+
+		if (result.isOverflow() && n < len) {
+
+			// a surrogate pair with room for one char only : its second char is kept for the next read
+			char[] pair = new char[2];
+			CharBuffer pairOut = CharBuffer.wrap(pair);
+
+			result = decoder.decode(window, pairOut, lastWindow);
+			if (result.isError()) {
+				result.throwException();
+			}
+			if (pairOut.position() > 0) {
+				cbuf[off + n++] = pair[0];
+				pendingChar = (pairOut.position() > 1) ? pair[1] : 0;
+			}
+		} else if (result.isUnderflow() && window.hasRemaining() && !lastWindow) {
+
+			// a sequence cut by the end of the window : the next window starts with it
+			this.map(windowStart + window.position());
+		}
+		return n;
+	}
+
+	// maps the window starting at the position in parameter
+	private void map(long position) throws IOException {
+		this.windowStart = position;
+		this.window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, fileSize - position));
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+}
@@ -0,0 +1,11 @@
+package aliachawaf;
+
+// thrown when a regex runs longer than the time allowed to match one field
+public class MatchTimeoutException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public MatchTimeoutException(String message) {
+		super(message);
+	}
+}
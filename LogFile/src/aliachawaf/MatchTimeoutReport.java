@@ -0,0 +1,127 @@
+package aliachawaf;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// the match timeouts of a run, by regex name and by pattern
+public class MatchTimeoutReport {
+
+	// number of line numbers kept as samples for each regex name and each pattern
+	private static final int MAX_SAMPLES = 5;
+
+	private Map<String, Entry> byRegexName;
+	private Map<String, Entry> byPattern;
+	private long nbTimeouts;
+
+	// constructor
+	public MatchTimeoutReport() {
+		this.byRegexName = new LinkedHashMap<String, Entry>();
+		this.byPattern = new LinkedHashMap<String, Entry>();
+		this.nbTimeouts = 0;
+	}
+
+	// getter
+	public long getNbTimeouts() {
+		return nbTimeouts;
+	}
+
+	// the regex regexName expected by pattern ran out of time on a field of the line lineNumber
+	public void recordTimeout(String regexName, LogPattern pattern, long lineNumber) {
+
+		nbTimeouts++;
+		record(byRegexName, regexName, lineNumber);
+		record(byPattern, pattern.getLogIdentifier(), lineNumber);
+	}
+
+	// adds the timeouts of another report (the one of another thread) to this one
+	public void merge(MatchTimeoutReport other) {
+
+		nbTimeouts += other.nbTimeouts;
+		merge(byRegexName, other.byRegexName);
+		merge(byPattern, other.byPattern);
+	}
+
+	private static void merge(Map<String, Entry> entries, Map<String, Entry> others) {
+
+		Entry entry;
+
+		for (Entry other : others.values()) {
+
+			entry = entries.get(other.key);
+
+			if (entry == null) {
+				entry = new Entry(other.key);
+				entries.put(other.key, entry);
+			}
+			entry.nbTimeouts += other.nbTimeouts;
+
+			for (Long lineNumber : other.sampleLines) {
+
+				if (entry.sampleLines.size() < MAX_SAMPLES && !entry.sampleLines.contains(lineNumber)) {
+					entry.sampleLines.add(lineNumber);
+				}
+			}
+		}
+	}
+
+	private static void record(Map<String, Entry> entries, String key, long lineNumber) {
+
+		Entry entry = entries.get(key);
+
+		if (entry == null) {
+			entry = new Entry(key);
+			entries.put(key, entry);
+		}
+		entry.nbTimeouts++;
+
+		// the same line can time out on several fields, it is kept once
+		if (entry.sampleLines.size() < MAX_SAMPLES && !entry.sampleLines.contains(lineNumber)) {
+			entry.sampleLines.add(lineNumber);
+		}
+	}
+
+	// the entries sorted by decreasing number of timeouts
+	private static List<Entry> ranking(Map<String, Entry> entries) {
+
+		List<Entry> ranking = new ArrayList<Entry>(entries.values());
+		ranking.sort((e1, e2) -> Long.compare(e2.nbTimeouts, e1.nbTimeouts));
+		return ranking;
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("match timeouts : ").append(nbTimeouts);
+		sb.append("\nby regex :");
+		for (Entry entry : ranking(byRegexName)) {
+			sb.append("\n  ").append(entry);
+		}
+		sb.append("\nby pattern :");
+		for (Entry entry : ranking(byPattern)) {
+			sb.append("\n  ").append(entry);
+		}
+		return sb.toString();
+	}
+
+	private static class Entry {
+
+		private String key;
+		private long nbTimeouts;
+		private List<Long> sampleLines;
+
+		private Entry(String key) {
+			this.key = key;
+			this.nbTimeouts = 0;
+			this.sampleLines = new ArrayList<Long>();
+		}
+
+		@Override
+		public String toString() {
+			return key + " : " + nbTimeouts + " (lines " + sampleLines + ")";
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package aliachawaf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * dispatch of the lines on the value of one column, for the patterns having the
+ * same number of fields : in this column, most patterns expect a finite set of
+ * strings (see LiteralSetMatcher), so the value of the field selects the few
+ * patterns which can accept it. The patterns expecting any other regex there
+ * are candidates for every value. The patterns are given by their index, the
+ * tables are not modified once built
+ */
+public class PatternDispatch {
+
+	private final int column;
+
+	// value (exact, then with the ASCII letters folded) -> candidates in the order of the file
+	private final Map<String, int[]> byValue;
+	private final Map<String, int[]> byFoldedValue;
+
+	// candidates for the values no literal set accepts
+	private final int[] wildcards;
+
+	private PatternDispatch(int column, List<LogPattern> patterns, ListRegexp listRegexp) {
+
+		Map<String, Set<LogPattern>> exact = new HashMap<String, Set<LogPattern>>();
+		Map<String, Set<LogPattern>> folded = new HashMap<String, Set<LogPattern>>();
+		List<LogPattern> wildcardPatterns = new ArrayList<LogPattern>();
+		LiteralSetMatcher set;
+
+		this.column = column;
+
+		for (LogPattern pattern : patterns) {
+
+			set = listRegexp.getLiteralSet(pattern.getRegexIds()[column]);
+
+			if (set == null) {
+				wildcardPatterns.add(pattern);
+				continue;
+			}
+			for (String s : set.getStrings()) {
+				addTo(set.isCaseInsensitive() ? folded : exact, s, pattern);
+			}
+		}
+
+		this.wildcards = this.inFileOrder(wildcardPatterns);
+		this.byValue = new HashMap<String, int[]>();
+		this.byFoldedValue = new HashMap<String, int[]>();
+
+		// an exact value is also accepted by the case insensitive sets having its folded value
+		for (Map.Entry<String, Set<LogPattern>> entry : exact.entrySet()) {
+
+			Set<LogPattern> candidates = new LinkedHashSet<LogPattern>(entry.getValue());
+
+			if (folded.containsKey(LiteralSetMatcher.fold(entry.getKey()))) {
+				candidates.addAll(folded.get(LiteralSetMatcher.fold(entry.getKey())));
+			}
+			candidates.addAll(wildcardPatterns);
+			this.byValue.put(entry.getKey(), this.inFileOrder(candidates));
+		}
+
+		for (Map.Entry<String, Set<LogPattern>> entry : folded.entrySet()) {
+
+			Set<LogPattern> candidates = new LinkedHashSet<LogPattern>(entry.getValue());
+
+			candidates.addAll(wildcardPatterns);
+			this.byFoldedValue.put(entry.getKey(), this.inFileOrder(candidates));
+		}
+	}
+
+	/*
+	 * returns the dispatch of the patterns on the column which leaves the fewest
+	 * candidates for a line, null if no column leaves fewer candidates than the
+	 * number of patterns
+	 */
+	public static PatternDispatch build(List<LogPattern> patterns, ListRegexp listRegexp) {
+
+		int bestColumn = -1;
+		int bestCost = patterns.size();
+		int cost;
+
+		if (patterns.isEmpty()) {
+			return null;
+		}
+
+		for (int column = 0; column < patterns.get(0).getRegexIds().length; column++) {
+
+			cost = cost(column, patterns, listRegexp);
+
+			if (cost < bestCost) {
+				bestCost = cost;
+				bestColumn = column;
+			}
+		}
+
+		return (bestColumn == -1) ? null : new PatternDispatch(bestColumn, patterns, listRegexp);
+	}
+
+	// largest number of candidates for a value of the column
+	private static int cost(int column, List<LogPattern> patterns, ListRegexp listRegexp) {
+
+		Map<String, Integer> nbPatternsByValue = new HashMap<String, Integer>();
+		int nbWildcards = 0;
+		int largest = 0;
+		LiteralSetMatcher set;
+		String value;
+
+		for (LogPattern pattern : patterns) {
+
+			set = listRegexp.getLiteralSet(pattern.getRegexIds()[column]);
+
+			if (set == null) {
+				nbWildcards++;
+				continue;
+			}
+
+			// an exact value and a folded one are counted together, as a bound
+			for (String s : set.getStrings()) {
+				value = LiteralSetMatcher.fold(s);
+				nbPatternsByValue.put(value, nbPatternsByValue.getOrDefault(value, 0) + 1);
+				largest = Math.max(largest, nbPatternsByValue.get(value));
+			}
+		}
+		return nbWildcards + largest;
+	}
+
+	// getter
+	public int getColumn() {
+		return column;
+	}
+
+	/*
+	 * returns the indexes, in the order of the file, of the patterns which can
+	 * accept value in the column (the array is shared and must not be modified)
+	 */
+	public int[] getCandidates(String value) {
+
+		int[] candidates = byValue.get(value);
+
+		if (candidates == null && !byFoldedValue.isEmpty()) {
+			candidates = byFoldedValue.get(LiteralSetMatcher.fold(value));
+		}
+		return (candidates == null) ? wildcards : candidates;
+	}
+
+	// the indexes of the patterns, in the order of the file
+	private int[] inFileOrder(Collection<LogPattern> candidates) {
+
+		int[] ordered = new int[candidates.size()];
+		int k = 0;
+
+		for (LogPattern pattern : candidates) {
+			ordered[k++] = pattern.getIndex();
+		}
+		Arrays.sort(ordered);
+
+		return ordered;
+	}
+
+	private static void addTo(Map<String, Set<LogPattern>> patternsByValue, String value, LogPattern pattern) {
+
+		if (!patternsByValue.containsKey(value)) {
+			patternsByValue.put(value, new LinkedHashSet<LogPattern>());
+		}
+		patternsByValue.get(value).add(pattern);
+	}
+}
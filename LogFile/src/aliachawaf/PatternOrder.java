@@ -0,0 +1,109 @@
+package aliachawaf;
+
+/*
+ * order in which one analysis tries the patterns having the same number of
+ * fields : the most frequent first, according to the profile. The patterns
+ * placed before in the file which could match the same lines are given by the
+ * rule set (see CompiledRuleSet.getEarlierOverlapping)
+ */
+public class PatternOrder {
+
+	// number of lines between two reorderings of the patterns
+	private static final int REORDER_PERIOD = 4096;
+
+	private CompiledRuleSet ruleSet;
+	private PatternProfile profile;
+
+	// the indexes of the patterns having the same number of fields, most frequent first
+	private int[] candidates;
+
+	// triedStamp[p] == lineStamp when the pattern of index p has been tried on the current line
+	private int[] triedStamp;
+	private int lineStamp;
+	private int nbLines;
+
+	// constructor : patterns are the indexes of a group of patterns having the same number of fields
+	public PatternOrder(int[] patterns, CompiledRuleSet ruleSet, PatternProfile profile) {
+
+		this.ruleSet = ruleSet;
+		this.profile = profile;
+		this.candidates = patterns.clone();
+		this.triedStamp = new int[ruleSet.getNbPatterns()];
+		this.lineStamp = 0;
+		this.nbLines = 0;
+
+		this.reorder();
+	}
+
+	// getter
+	public int[] getCandidates() {
+		return candidates;
+	}
+
+	// called at the beginning of each line, sometimes reorder the patterns
+	public void newLine() {
+
+		lineStamp++;
+		nbLines++;
+
+		if (nbLines == REORDER_PERIOD) {
+			this.reorder();
+			nbLines = 0;
+		}
+	}
+
+	public void markTried(int pattern) {
+		triedStamp[pattern] = lineStamp;
+	}
+
+	public boolean isTried(int pattern) {
+		return triedStamp[pattern] == lineStamp;
+	}
+
+	/*
+	 * stable insertion sort of the patterns by decreasing number of hits (the order
+	 * of the file in case of equality). The profile can be updated by other
+	 * threads meanwhile, so the sort uses a copy of the numbers of hits
+	 */
+	private void reorder() {
+
+		long[] nbHits = new long[candidates.length];
+		int[] positions = new int[candidates.length];
+		int position;
+		int k;
+
+		for (int i = 0; i < candidates.length; i++) {
+			nbHits[i] = profile.getNbHits(ruleSet.getPattern(candidates[i]));
+			positions[i] = i;
+		}
+
+		for (int i = 1; i < positions.length; i++) {
+
+			position = positions[i];
+			k = i - 1;
+
+			while (k >= 0 && this.before(position, positions[k], nbHits)) {
+				positions[k + 1] = positions[k];
+				k--;
+			}
+
+			positions[k + 1] = position;
+		}
+
+		int[] ordered = new int[candidates.length];
+
+		for (int i = 0; i < positions.length; i++) {
+			ordered[i] = candidates[positions[i]];
+		}
+		candidates = ordered;
+	}
+
+	// true if the candidate at position1 has to be tried before the one at position2
+	private boolean before(int position1, int position2, long[] nbHits) {
+
+		if (nbHits[position1] != nbHits[position2]) {
+			return nbHits[position1] > nbHits[position2];
+		}
+		return candidates[position1] < candidates[position2];
+	}
+}
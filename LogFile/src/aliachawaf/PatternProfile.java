@@ -0,0 +1,101 @@
+package aliachawaf;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class PatternProfile {
+
+	private ListLogPatterns listLogPatterns;
+
+	// nbHits[i] is the number of lines matched by the pattern of index i (the threads
+	// analysing the same file share the profile)
+	private AtomicLongArray nbHits;
+
+	// constructor : no hit at the beginning
+	public PatternProfile(ListLogPatterns listLogPatterns) {
+		this.listLogPatterns = listLogPatterns;
+		this.nbHits = new AtomicLongArray(listLogPatterns.getListPatterns().size());
+	}
+
+	// getters
+	public long getNbHits(LogPattern pattern) {
+		return nbHits.get(pattern.getIndex());
+	}
+
+	public void recordHit(LogPattern pattern) {
+		nbHits.incrementAndGet(pattern.getIndex());
+	}
+
+	/*
+	 * read the profile saved by a previous run : each line is the log identifier of
+	 * a pattern and its number of hits, after the last space (the identifier can
+	 * contain spaces). The patterns which are not in the file any more are
+	 * ignored, a missing profile just means we start from zero
+	 */
+	public void load(String fileName) {
+
+		File file = new File(fileName);
+
+		if (!file.exists()) {
+			return;
+		}
+
+		try {
+			BufferedReader b = new BufferedReader(new FileReader(file));
+
+			String line = "";
+			String identifier;
+			int separator;
+
+			while ((line = b.readLine()) != null) {
+
+				// the log identifier, then the number of hits after the last space
+				separator = line.lastIndexOf(' ');
+
+				if (separator != -1) {
+
+					identifier = line.substring(0, separator);
+
+					for (LogPattern pattern : this.listLogPatterns.getListPatterns()) {
+
+						if (pattern.getLogIdentifier().equals(identifier)) {
+							nbHits.addAndGet(pattern.getIndex(), Long.parseLong(line.substring(separator + 1)));
+						}
+					}
+				}
+			}
+
+			b.close();
+
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (NumberFormatException e) {
+			System.out.println("Corrupted pattern profile " + fileName + ", it is ignored");
+			nbHits = new AtomicLongArray(nbHits.length());
+		}
+	}
+
+	// write the number of hits of each pattern (loaded ones included) for the next run
+	public void save(String fileName) {
+
+		FileWriter fileWriter = null;
+
+		try {
+			fileWriter = new FileWriter(fileName, false);
+
+			for (LogPattern pattern : this.listLogPatterns.getListPatterns()) {
+				fileWriter.write(pattern.getLogIdentifier() + " " + nbHits.get(pattern.getIndex()) + "\n");
+			}
+
+			fileWriter.close();
+
+		} catch (IOException e) {
+			System.out.println("Writing pattern profile error!");
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,358 @@
+package aliachawaf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.csv.CSVRecord;
+
+/*
+ * finds the first pattern matching a line among the patterns having the same
+ * number of fields, without trying them one by one : for each column, the
+ * definitions expected there by the patterns are merged in union DFAs (see
+ * DfaMatcher.compileUnion), so one scan of the field gives all the definitions
+ * it matches, hence the set of patterns accepting the field. The sets of the
+ * columns are intersected, and the first pattern left is the result.
+ *
+ * The patterns are bits of a long[] (bit p for the p-th pattern of the group,
+ * in the order of the file). The definitions the DFA doesn't handle are checked
+ * one by one, only while a pattern expecting them is still a candidate.
+ *
+ * The matcher is built once with the rule set and only read afterwards, so the
+ * threads can share it : the state of a search (the candidates left, the
+ * patterns accepting the current field) is in a Search, one per analysis
+ */
+public class PatternSetMatcher {
+
+	// largest number of definitions merged in one DFA
+	private static final int MAX_UNION_SIZE = 64;
+
+	// the patterns of the group, and their indexes in the file
+	private final LogPattern[] patterns;
+	private final int[] patternIndexes;
+	private final int nbWords;
+	private final Column[] columns;
+
+	// constructor : the patterns have the same number of fields and are in the order of the file
+	public PatternSetMatcher(List<LogPattern> patterns, ListRegexp listRegexp) {
+
+		this.patterns = patterns.toArray(new LogPattern[patterns.size()]);
+		this.patternIndexes = new int[patterns.size()];
+		this.nbWords = (patterns.size() + 63) / 64;
+
+		for (int p = 0; p < patterns.size(); p++) {
+			this.patternIndexes[p] = patterns.get(p).getIndex();
+		}
+
+		int nbFields = patterns.isEmpty() ? 0 : patterns.get(0).getRegexIds().length;
+
+		this.columns = new Column[nbFields];
+
+		for (int i = 0; i < nbFields; i++) {
+			this.columns[i] = this.buildColumn(i, listRegexp);
+		}
+	}
+
+	// returns a new search, to be used by one thread at a time
+	public Search newSearch() {
+		return new Search();
+	}
+
+	/*
+	 * a slot per distinct definition expected in the column, with the patterns
+	 * expecting it. The definitions the parser accepts are merged in union DFAs
+	 */
+	private Column buildColumn(int index, ListRegexp listRegexp) {
+
+		Map<Integer, Integer> slotsByDefinition = new LinkedHashMap<Integer, Integer>();
+		List<Integer> regexIds = new ArrayList<Integer>();
+		List<long[]> slotPatterns = new ArrayList<long[]>();
+		List<Integer> parsedSlots = new ArrayList<Integer>();
+		List<RegexNode> parsedNodes = new ArrayList<RegexNode>();
+		List<Integer> otherSlots = new ArrayList<Integer>();
+		List<DfaMatcher> unions = new ArrayList<DfaMatcher>();
+		List<int[]> unionSlots = new ArrayList<int[]>();
+		int regexId, definitionId;
+		Integer slot;
+
+		for (int p = 0; p < patterns.length; p++) {
+
+			regexId = patterns[p].getRegexIds()[index];
+			definitionId = listRegexp.getDefinitionId(regexId);
+			slot = slotsByDefinition.get(definitionId);
+
+			if (slot == null) {
+				slot = regexIds.size();
+				slotsByDefinition.put(definitionId, slot);
+				regexIds.add(regexId);
+				slotPatterns.add(new long[nbWords]);
+			}
+			slotPatterns.get(slot)[p >> 6] |= 1L << p;
+		}
+
+		for (slot = 0; slot < regexIds.size(); slot++) {
+			try {
+				parsedNodes.add(RegexParser.parseFullMatch(listRegexp.getListRegexp().get(regexIds.get(slot)).getDefinition()));
+				parsedSlots.add(slot);
+			} catch (UnsupportedRegexException e) {
+				otherSlots.add(slot);
+			}
+		}
+
+		for (int start = 0; start < parsedSlots.size(); start += MAX_UNION_SIZE) {
+			int end = Math.min(start + MAX_UNION_SIZE, parsedSlots.size());
+			this.addUnions(parsedNodes.subList(start, end), parsedSlots.subList(start, end), unions, unionSlots,
+					otherSlots);
+		}
+
+		String[] regexNames = new String[regexIds.size()];
+
+		for (slot = 0; slot < regexIds.size(); slot++) {
+			regexNames[slot] = listRegexp.getListRegexp().get(regexIds.get(slot)).getName();
+		}
+
+		return new Column(index, this.toArray(regexIds), regexNames, slotPatterns.toArray(new long[0][]),
+				unions.toArray(new DfaMatcher[0]), unionSlots.toArray(new int[0][]), this.toArray(otherSlots), nbWords);
+	}
+
+	// builds the union of the definitions, split in two when its NFA is too big
+	private void addUnions(List<RegexNode> nodes, List<Integer> slots, List<DfaMatcher> unions, List<int[]> unionSlots,
+			List<Integer> otherSlots) {
+
+		DfaMatcher union = DfaMatcher.compileUnion(nodes);
+
+		if (union != null) {
+			unions.add(union);
+			unionSlots.add(this.toArray(slots));
+		} else if (nodes.size() == 1) {
+			otherSlots.add(slots.get(0));
+		} else {
+			int middle = nodes.size() / 2;
+			this.addUnions(nodes.subList(0, middle), slots.subList(0, middle), unions, unionSlots, otherSlots);
+			this.addUnions(nodes.subList(middle, nodes.size()), slots.subList(middle, slots.size()), unions,
+					unionSlots, otherSlots);
+		}
+	}
+
+	private int[] toArray(List<Integer> list) {
+
+		int[] array = new int[list.size()];
+
+		for (int k = 0; k < array.length; k++) {
+			array[k] = list.get(k);
+		}
+		return array;
+	}
+
+	// bits &= other, returns false if no bit is left
+	private static boolean and(long[] bits, long[] other) {
+
+		long left = 0;
+
+		for (int w = 0; w < bits.length; w++) {
+			bits[w] &= other[w];
+			left |= bits[w];
+		}
+		return left != 0;
+	}
+
+	private static void or(long[] bits, long[] other) {
+
+		for (int w = 0; w < bits.length; w++) {
+			bits[w] |= other[w];
+		}
+	}
+
+	private static boolean intersects(long[] bits, long[] other) {
+
+		for (int w = 0; w < bits.length; w++) {
+			if ((bits[w] & other[w]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * the state of the searches of one analysis : the candidates left while
+	 * reading a line, the patterns accepting the current field, and the patterns
+	 * accepting a field ending in each state of the union DFAs (computed once)
+	 */
+	public final class Search {
+
+		private final long[] candidates;
+		private final long[] columnPatterns;
+
+		// statePatterns[i][u][state] : for the union u of the column i
+		private final long[][][][] statePatterns;
+
+		private Search() {
+
+			this.candidates = new long[nbWords];
+			this.columnPatterns = new long[nbWords];
+			this.statePatterns = new long[columns.length][][][];
+
+			for (int i = 0; i < columns.length; i++) {
+				this.statePatterns[i] = new long[columns[i].unions.length][16][];
+			}
+		}
+
+		/*
+		 * returns the index in the file of the first pattern matching the line, -1 if
+		 * none matches. The results of the definitions checked one by one are shared
+		 * with the other modes through the memo, and their timeouts recorded in the
+		 * report
+		 */
+		public int firstMatching(CSVRecord line, FieldMatchMemo memo, MatchTimeoutReport report) {
+
+			if (patterns.length == 0) {
+				return -1;
+			}
+
+			Arrays.fill(candidates, -1L);
+			candidates[nbWords - 1] = -1L >>> (64 * nbWords - patterns.length);
+
+			for (int i = 0; i < columns.length; i++) {
+
+				this.findColumnPatterns(i, line, memo, report);
+
+				if (!and(candidates, columnPatterns)) {
+					return -1;
+				}
+			}
+
+			for (int w = 0; w < nbWords; w++) {
+				if (candidates[w] != 0) {
+					return patternIndexes[64 * w + Long.numberOfTrailingZeros(candidates[w])];
+				}
+			}
+			return -1;
+		}
+
+		// fills columnPatterns with the candidates accepting the field of the column i
+		private void findColumnPatterns(int i, CSVRecord line, FieldMatchMemo memo, MatchTimeoutReport report) {
+
+			Column column = columns[i];
+			String field = line.get(column.index);
+			int state;
+
+			Arrays.fill(columnPatterns, 0L);
+
+			for (int u = 0; u < column.unions.length; u++) {
+
+				if (!intersects(candidates, column.unionPatterns[u])) {
+					continue;
+				}
+
+				state = column.unions[u].run(field);
+
+				if (state != -1) {
+					or(columnPatterns, this.statePatterns(i, u, state));
+				} else {
+					// a field the DFA can't read (surrogate chars), its definitions are checked one by one
+					for (int slot : column.unionSlots[u]) {
+						this.checkSlot(column, slot, line, memo, report);
+					}
+				}
+			}
+
+			for (int slot : column.otherSlots) {
+				this.checkSlot(column, slot, line, memo, report);
+			}
+		}
+
+		// adds the patterns of the slot to columnPatterns if its definition matches the field
+		private void checkSlot(Column column, int slot, CSVRecord line, FieldMatchMemo memo,
+				MatchTimeoutReport report) {
+
+			long[] slotPatterns = column.slotPatterns[slot];
+
+			if (!intersects(candidates, slotPatterns)) {
+				return;
+			}
+
+			try {
+				if (memo.matches(column.index, column.slotRegexIds[slot], line.get(column.index))) {
+					or(columnPatterns, slotPatterns);
+				}
+			} catch (MatchTimeoutException e) {
+				// recorded for each candidate pattern expecting the definition
+				for (int w = 0; w < nbWords; w++) {
+					for (long bits = slotPatterns[w] & candidates[w]; bits != 0; bits &= bits - 1) {
+						report.recordTimeout(column.slotRegexNames[slot],
+								patterns[64 * w + Long.numberOfTrailingZeros(bits)], line.getRecordNumber());
+					}
+				}
+			}
+		}
+
+		private long[] statePatterns(int i, int u, int state) {
+
+			long[][] byState = statePatterns[i][u];
+
+			if (state >= byState.length) {
+				byState = Arrays.copyOf(byState, Math.max(2 * byState.length, state + 1));
+				statePatterns[i][u] = byState;
+			}
+
+			if (byState[state] == null) {
+				byState[state] = columns[i].acceptingPatterns(u, state);
+			}
+			return byState[state];
+		}
+	}
+
+	// the definitions expected in one column, and the patterns expecting each of them
+	private static final class Column {
+
+		private final int index;
+
+		// slot : a distinct definition, checked with the regex id, and its patterns
+		private final int[] slotRegexIds;
+		private final String[] slotRegexNames;
+		private final long[][] slotPatterns;
+
+		// union DFAs : the slot of each of their definitions, and the patterns of all of them
+		private final DfaMatcher[] unions;
+		private final int[][] unionSlots;
+		private final long[][] unionPatterns;
+
+		// the slots checked one by one
+		private final int[] otherSlots;
+
+		private Column(int index, int[] slotRegexIds, String[] slotRegexNames, long[][] slotPatterns,
+				DfaMatcher[] unions, int[][] unionSlots, int[] otherSlots, int nbWords) {
+
+			this.index = index;
+			this.slotRegexIds = slotRegexIds;
+			this.slotRegexNames = slotRegexNames;
+			this.slotPatterns = slotPatterns;
+			this.unions = unions;
+			this.unionSlots = unionSlots;
+			this.otherSlots = otherSlots;
+			this.unionPatterns = new long[unions.length][nbWords];
+
+			for (int u = 0; u < unions.length; u++) {
+				for (int slot : unionSlots[u]) {
+					or(this.unionPatterns[u], slotPatterns[slot]);
+				}
+			}
+		}
+
+		// returns the patterns accepting a field ending in the state of the union u
+		private long[] acceptingPatterns(int u, int state) {
+
+			long[] tags = unions[u].getTags(state);
+			long[] accepting = new long[unionPatterns[u].length];
+
+			for (int k = 0; k < unionSlots[u].length; k++) {
+				if ((tags[k >> 6] & (1L << k)) != 0) {
+					or(accepting, slotPatterns[unionSlots[u][k]]);
+				}
+			}
+			return accepting;
+		}
+	}
+}
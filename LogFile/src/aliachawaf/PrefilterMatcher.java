@@ -0,0 +1,90 @@
+package aliachawaf;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * rejects the fields failing the facts of the definition (length, first char,
+ * required literals) before calling the matcher of the definition
+ */
+public class PrefilterMatcher implements FieldMatcher {
+
+	private RegexFacts facts;
+	private FieldMatcher matcher;
+
+	private LongAdder nbChecks;
+	private LongAdder nbRejections;
+
+	// constructor
+	public PrefilterMatcher(RegexFacts facts, FieldMatcher matcher) {
+		this.facts = facts;
+		this.matcher = matcher;
+		this.nbChecks = new LongAdder();
+		this.nbRejections = new LongAdder();
+	}
+
+	// getters
+	public RegexFacts getFacts() {
+		return facts;
+	}
+
+	public FieldMatcher getMatcher() {
+		return matcher;
+	}
+
+	public long getNbChecks() {
+		return nbChecks.sum();
+	}
+
+	public long getNbRejections() {
+		return nbRejections.sum();
+	}
+
+	@Override
+	public boolean matches(String field) {
+
+		nbChecks.increment();
+
+		if (!this.mayMatch(field)) {
+			nbRejections.increment();
+			return false;
+		}
+		return matcher.matches(field);
+	}
+
+	// returns false if the field can't match the definition
+	private boolean mayMatch(String field) {
+
+		int length = field.length();
+
+		if (length < facts.getMinLength()) {
+			return false;
+		}
+
+		// java.util.regex reads a surrogate pair as one char
+		if (facts.getMaxLength() != -1 && length > facts.getMaxLength() && !hasSurrogate(field)) {
+			return false;
+		}
+
+		if (length > 0 && !Character.isSurrogate(field.charAt(0))
+				&& !CharRanges.contains(facts.getFirstChars(), field.charAt(0))) {
+			return false;
+		}
+
+		for (String literal : facts.getRequiredLiterals()) {
+			if (!field.contains(literal)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean hasSurrogate(String field) {
+
+		for (int i = 0; i < field.length(); i++) {
+			if (Character.isSurrogate(field.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,149 @@
+package aliachawaf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+ * finds where a record of a CSV file starts without parsing the records before
+ * it : the bytes are scanned for the line ends which are not in a quoted field,
+ * with the rules of CSVFormat.DEFAULT (a quote opens a quoted field only at the
+ * beginning of the field, "" is a quote in a quoted field, the empty lines are
+ * not records). The delimiter, the quote and the line ends are ASCII, so they
+ * are found the same way in an ASCII, Latin-1 or UTF-8 file
+ */
+public class RecordScanner {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private byte delimiter;
+
+	// the file is decoded as UTF-8, or as a charset of one byte per char (ISO-8859-1, US-ASCII)
+	private boolean utf8;
+
+	// start of the record found : in bytes, and in chars of the file decoded with its charset
+	private long byteOffset;
+	private long charOffset;
+
+	// constructors
+	public RecordScanner(char delimiter) {
+		this(delimiter, StandardCharsets.UTF_8);
+	}
+
+	public RecordScanner(char delimiter, Charset charset) {
+
+		if (!charset.equals(StandardCharsets.UTF_8) && !charset.equals(StandardCharsets.ISO_8859_1)
+				&& !charset.equals(StandardCharsets.US_ASCII)) {
+			throw new IllegalArgumentException("Unsupported charset " + charset + " (UTF-8 or ISO-8859-1 expected)");
+		}
+		this.delimiter = (byte) delimiter;
+		this.utf8 = charset.equals(StandardCharsets.UTF_8);
+		this.byteOffset = 0;
+		this.charOffset = 0;
+	}
+
+	// getters
+	public long getByteOffset() {
+		return byteOffset;
+	}
+
+	public long getCharOffset() {
+		return charOffset;
+	}
+
+	/*
+	 * returns true if the file has the record numbered recordNumber (from 1), its
+	 * offsets are then given by the getters
+	 */
+	public boolean findRecord(Path path, long recordNumber) throws IOException {
+
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long nbRecordsRead = 0;
+		long position = 0;
+		long nbChars = 0;
+		boolean inQuotes = false;
+		boolean quoteInQuotes = false;
+		boolean fieldStart = true;
+		boolean lineEmpty = true;
+		boolean afterCR = false;
+		boolean found = false;
+		byte b;
+		int n;
+
+		this.byteOffset = 0;
+		this.charOffset = 0;
+
+		if (recordNumber <= 1) {
+			return true;
+		}
+
+		InputStream in = Files.newInputStream(path);
+
+		try {
+			while ((n = in.read(buffer)) > 0) {
+
+				for (int k = 0; k < n; k++, position++) {
+
+					b = buffer[k];
+
+					// the record starts after the end of the previous one (CR LF being one end), as
+					// CSVParser counts the positions : the empty lines before it belong to it
+					if (nbRecordsRead == recordNumber - 1 && !found) {
+						found = true;
+						this.byteOffset = position;
+						this.charOffset = nbChars;
+
+						if (afterCR && b == '\n') {
+							this.byteOffset++;
+							this.charOffset++;
+						}
+					}
+					afterCR = false;
+
+					// a quote in a quoted field : closes it, unless another quote follows
+					if (quoteInQuotes) {
+						quoteInQuotes = false;
+						if (b == '"') {
+							nbChars++;
+							continue;
+						}
+						inQuotes = false;
+					}
+
+					if (inQuotes) {
+						quoteInQuotes = (b == '"');
+					} else if (b == '\n' || b == '\r') {
+						// end of a record, unless the line is empty
+						if (!lineEmpty) {
+							nbRecordsRead++;
+						}
+						afterCR = (b == '\r');
+						lineEmpty = true;
+						fieldStart = true;
+					} else if (found) {
+						// the record exists (not only empty lines until the end of the file)
+						return true;
+					} else {
+						inQuotes = (b == '"' && fieldStart);
+						fieldStart = (b == delimiter);
+						lineEmpty = false;
+					}
+
+					// a char starts on each byte which doesn't continue a UTF-8 sequence, a
+					// sequence of 4 bytes is a surrogate pair (each byte is a char in Latin-1)
+					if (!utf8) {
+						nbChars++;
+					} else if ((b & 0xC0) != 0x80) {
+						nbChars += ((b & 0xF8) == 0xF0) ? 2 : 1;
+					}
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return false;
+	}
+}
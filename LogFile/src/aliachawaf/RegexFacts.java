@@ -0,0 +1,275 @@
+package aliachawaf;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * necessary conditions on the fields matching a definition, derived from its
+ * syntax tree : the length of the field, its first char and the literal
+ * substrings it must contain. A field failing one of them can't match, a field
+ * passing all of them still has to be checked by the regex
+ */
+public class RegexFacts {
+
+	// bound above which the length is taken as unbounded
+	private static final int MAX_LENGTH = 1 << 20;
+
+	// number of literals kept, the longest ones
+	private static final int MAX_LITERALS = 3;
+
+	private int minLength;
+
+	// -1 : no limit
+	private int maxLength;
+
+	// the chars a non empty matching field can start with
+	private int[] firstChars;
+
+	// substrings found in every matching field
+	private String[] requiredLiterals;
+
+	private RegexFacts(RegexNode node) {
+		this.minLength = minLength(node);
+		this.maxLength = maxLength(node);
+		this.firstChars = firstChars(node);
+		this.requiredLiterals = longest(requiredLiterals(node));
+	}
+
+	// returns the facts of the definition, null if it can't be analysed
+	public static RegexFacts analyze(String def) {
+
+		try {
+			return new RegexFacts(RegexParser.parseSuperset(def));
+		} catch (UnsupportedRegexException e) {
+			return null;
+		}
+	}
+
+	// getters
+	public int getMinLength() {
+		return minLength;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	public int[] getFirstChars() {
+		return firstChars;
+	}
+
+	public String[] getRequiredLiterals() {
+		return requiredLiterals;
+	}
+
+	// returns true if no field can be rejected with these facts
+	public boolean isTrivial() {
+		return minLength == 0 && maxLength == -1 && firstChars.length == 2 && firstChars[0] == 0
+				&& firstChars[1] == CharRanges.MAX_CHAR && requiredLiterals.length == 0;
+	}
+
+	private static int minLength(RegexNode node) {
+
+		long length = 0;
+
+		switch (node.getType()) {
+		case RegexNode.CHARS:
+			return 1;
+		case RegexNode.CONCAT:
+			for (RegexNode child : node.getChildren()) {
+				length += minLength(child);
+			}
+			return (int) Math.min(length, MAX_LENGTH);
+		case RegexNode.ALTERNATION:
+			length = MAX_LENGTH;
+			for (RegexNode child : node.getChildren()) {
+				length = Math.min(length, minLength(child));
+			}
+			return (int) length;
+		case RegexNode.REPEAT:
+			return (int) Math.min((long) node.getMin() * minLength(node.getChildren().get(0)), MAX_LENGTH);
+		default:
+			return 0;
+		}
+	}
+
+	private static int maxLength(RegexNode node) {
+
+		long length = 0;
+		int childLength;
+
+		switch (node.getType()) {
+		case RegexNode.CHARS:
+			return 1;
+		case RegexNode.CONCAT:
+			for (RegexNode child : node.getChildren()) {
+				childLength = maxLength(child);
+				if (childLength == -1) {
+					return -1;
+				}
+				length += childLength;
+			}
+			return (length > MAX_LENGTH) ? -1 : (int) length;
+		case RegexNode.ALTERNATION:
+			for (RegexNode child : node.getChildren()) {
+				childLength = maxLength(child);
+				if (childLength == -1) {
+					return -1;
+				}
+				length = Math.max(length, childLength);
+			}
+			return (int) length;
+		case RegexNode.REPEAT:
+			childLength = maxLength(node.getChildren().get(0));
+			if (childLength == 0 || node.getMax() == 0) {
+				return 0;
+			}
+			if (childLength == -1 || node.getMax() == -1) {
+				return -1;
+			}
+			length = (long) node.getMax() * childLength;
+			return (length > MAX_LENGTH) ? -1 : (int) length;
+		default:
+			return 0;
+		}
+	}
+
+	private static int[] firstChars(RegexNode node) {
+
+		int[] ranges = CharRanges.NONE;
+
+		switch (node.getType()) {
+		case RegexNode.CHARS:
+			return node.getRanges();
+		case RegexNode.CONCAT:
+			// the first chars of the children up to the first one which can't be empty
+			for (RegexNode child : node.getChildren()) {
+				ranges = CharRanges.union(ranges, firstChars(child));
+				if (!child.isNullable()) {
+					break;
+				}
+			}
+			return ranges;
+		case RegexNode.ALTERNATION:
+			for (RegexNode child : node.getChildren()) {
+				ranges = CharRanges.union(ranges, firstChars(child));
+			}
+			return ranges;
+		case RegexNode.REPEAT:
+			return (node.getMax() == 0) ? CharRanges.NONE : firstChars(node.getChildren().get(0));
+		default:
+			return CharRanges.NONE;
+		}
+	}
+
+	// returns the only string matched by the node, null if it matches several ones
+	private static String exactString(RegexNode node) {
+
+		StringBuilder sb = new StringBuilder();
+		String childString;
+		int[] ranges;
+
+		switch (node.getType()) {
+		case RegexNode.CHARS:
+			ranges = node.getRanges();
+			return (ranges.length == 2 && ranges[0] == ranges[1]) ? String.valueOf((char) ranges[0]) : null;
+		case RegexNode.CONCAT:
+			for (RegexNode child : node.getChildren()) {
+				childString = exactString(child);
+				if (childString == null) {
+					return null;
+				}
+				sb.append(childString);
+			}
+			return sb.toString();
+		case RegexNode.ALTERNATION:
+			return (node.getChildren().size() == 1) ? exactString(node.getChildren().get(0)) : null;
+		case RegexNode.REPEAT:
+			childString = exactString(node.getChildren().get(0));
+			if (childString == null || node.getMin() != node.getMax()) {
+				return null;
+			}
+			for (int k = 0; k < node.getMin(); k++) {
+				sb.append(childString);
+			}
+			return sb.toString();
+		case RegexNode.EMPTY:
+			return "";
+		default:
+			return null;
+		}
+	}
+
+	// returns substrings found in every string matched by the node
+	private static Set<String> requiredLiterals(RegexNode node) {
+
+		Set<String> literals = new LinkedHashSet<String>();
+		String exact = exactString(node);
+
+		if (exact != null) {
+			if (!exact.isEmpty()) {
+				literals.add(exact);
+			}
+			return literals;
+		}
+
+		switch (node.getType()) {
+		case RegexNode.CONCAT:
+			// the consecutive children matching one string form a longer literal
+			StringBuilder run = new StringBuilder();
+			String childString;
+
+			for (RegexNode child : node.getChildren()) {
+				childString = exactString(child);
+
+				if (childString != null) {
+					run.append(childString);
+				} else {
+					if (run.length() > 0) {
+						literals.add(run.toString());
+						run.setLength(0);
+					}
+					literals.addAll(requiredLiterals(child));
+				}
+			}
+			if (run.length() > 0) {
+				literals.add(run.toString());
+			}
+			return literals;
+		case RegexNode.ALTERNATION:
+			// only the literals required by every branch
+			literals.addAll(requiredLiterals(node.getChildren().get(0)));
+			for (RegexNode child : node.getChildren()) {
+				literals.retainAll(requiredLiterals(child));
+			}
+			return literals;
+		case RegexNode.REPEAT:
+			return (node.getMin() > 0) ? requiredLiterals(node.getChildren().get(0)) : literals;
+		default:
+			return literals;
+		}
+	}
+
+	// keeps the longest literals, none of them being included in another one
+	private static String[] longest(Set<String> literals) {
+
+		List<String> sorted = new ArrayList<String>(literals);
+		List<String> kept = new ArrayList<String>();
+		boolean included;
+
+		sorted.sort((s1, s2) -> Integer.compare(s2.length(), s1.length()));
+
+		for (String literal : sorted) {
+			included = false;
+			for (String longer : kept) {
+				included = included || longer.contains(literal);
+			}
+			if (!included && kept.size() < MAX_LITERALS) {
+				kept.add(literal);
+			}
+		}
+		return kept.toArray(new String[kept.size()]);
+	}
+}
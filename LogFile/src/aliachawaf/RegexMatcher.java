@@ -0,0 +1,45 @@
+package aliachawaf;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class RegexMatcher implements FieldMatcher {
+
+	private Pattern pattern;
+
+	// time allowed to match one field in nanoseconds, 0 : no limit
+	private long timeoutNanos;
+
+	// each thread reuses its own Matcher
+	private final ThreadLocal<Matcher> matcher;
+
+	// constructor
+	public RegexMatcher(final Pattern pattern) {
+		this(pattern, 0);
+	}
+
+	public RegexMatcher(final Pattern pattern, long timeoutNanos) {
+		this.pattern = pattern;
+		this.timeoutNanos = timeoutNanos;
+		this.matcher = ThreadLocal.withInitial(() -> pattern.matcher(""));
+	}
+
+	// getters
+	public Pattern getPattern() {
+		return pattern;
+	}
+
+	public long getTimeoutNanos() {
+		return timeoutNanos;
+	}
+
+	// throws MatchTimeoutException if a time limit is set and the match exceeds it
+	@Override
+	public boolean matches(String field) {
+
+		if (timeoutNanos <= 0) {
+			return matcher.get().reset(field).matches();
+		}
+		return matcher.get().reset(new DeadlineCharSequence(field, System.nanoTime() + timeoutNanos)).matches();
+	}
+}
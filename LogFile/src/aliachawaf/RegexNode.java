@@ -0,0 +1,117 @@
+package aliachawaf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// node of the syntax tree of a regex definition, built by RegexParser
+public class RegexNode {
+
+	// one char among a set (an empty set never matches)
+	public static final int CHARS = 0;
+	// the children one after the other
+	public static final int CONCAT = 1;
+	// one of the children
+	public static final int ALTERNATION = 2;
+	// the child between min and max times (max = -1 : no limit)
+	public static final int REPEAT = 3;
+	// the empty string
+	public static final int EMPTY = 4;
+	// zero-width assertions : ^, $, (?=X), (?!X), (?<=X), (?<!X)
+	public static final int START = 5;
+	public static final int END = 6;
+	public static final int LOOKAHEAD = 7;
+	public static final int NEGATIVE_LOOKAHEAD = 8;
+	public static final int LOOKBEHIND = 9;
+	public static final int NEGATIVE_LOOKBEHIND = 10;
+
+	private int type;
+	private int[] ranges;
+	private List<RegexNode> children;
+	private int min;
+	private int max;
+
+	private RegexNode(int type) {
+		this.type = type;
+		this.ranges = CharRanges.NONE;
+		this.children = new ArrayList<RegexNode>();
+		this.min = 0;
+		this.max = 0;
+	}
+
+	public static RegexNode chars(int[] ranges) {
+		RegexNode node = new RegexNode(CHARS);
+		node.ranges = ranges;
+		return node;
+	}
+
+	public static RegexNode empty() {
+		return new RegexNode(EMPTY);
+	}
+
+	public static RegexNode repeat(RegexNode child, int min, int max) {
+		RegexNode node = new RegexNode(REPEAT);
+		node.children.add(child);
+		node.min = min;
+		node.max = max;
+		return node;
+	}
+
+	// type is CONCAT, ALTERNATION or one of the assertions (which have one child, or none)
+	public static RegexNode of(int type, List<RegexNode> children) {
+		RegexNode node = new RegexNode(type);
+		node.children.addAll(children);
+		return node;
+	}
+
+	// getters
+	public int getType() {
+		return type;
+	}
+
+	public int[] getRanges() {
+		return ranges;
+	}
+
+	public List<RegexNode> getChildren() {
+		return children;
+	}
+
+	public int getMin() {
+		return min;
+	}
+
+	public int getMax() {
+		return max;
+	}
+
+	public boolean isAssertion() {
+		return type >= START;
+	}
+
+	// returns true if the node can match the empty string (the assertions are not expected here)
+	public boolean isNullable() {
+
+		switch (type) {
+		case CHARS:
+			return false;
+		case CONCAT:
+			for (RegexNode child : children) {
+				if (!child.isNullable()) {
+					return false;
+				}
+			}
+			return true;
+		case ALTERNATION:
+			for (RegexNode child : children) {
+				if (child.isNullable()) {
+					return true;
+				}
+			}
+			return false;
+		case REPEAT:
+			return min == 0 || children.get(0).isNullable();
+		default:
+			return true;
+		}
+	}
+}
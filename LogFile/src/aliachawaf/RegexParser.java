@@ -0,0 +1,494 @@
+package aliachawaf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * parses the subset of the java.util.regex syntax used by our definitions into a
+ * RegexNode tree : literals, escapes, classes, '.', groups, alternations,
+ * greedy and lazy quantifiers, and the assertions at the edges of the regex.
+ * Everything else (back references, atomic groups, possessive quantifiers,
+ * inline flags, \b, \p{...}, nested classes...) throws UnsupportedRegexException,
+ * so that the caller keeps java.util.regex for this definition.
+ * parseSuperset reads some of these constructs loosely, for the callers which
+ * only need necessary conditions on the fields accepted (see RegexFacts)
+ */
+public class RegexParser {
+
+	// largest bound accepted in {min,max}
+	private static final int MAX_REPEAT = 1000;
+
+	private String def;
+	private int pos;
+
+	// true : the tree may accept more fields than the definition
+	private boolean superset;
+
+	private RegexParser(String def, boolean superset) {
+		this.def = def;
+		this.pos = 0;
+		this.superset = superset;
+	}
+
+	/*
+	 * returns the tree of the definition for a match of the whole field : the
+	 * assertions placed at the very beginning or end are replaced by what they are
+	 * worth there (nothing can be seen before the first char or after the last
+	 * one), the others are not supported
+	 */
+	public static RegexNode parseFullMatch(String def) throws UnsupportedRegexException {
+		return withoutAssertions(parse(def), true, true, false);
+	}
+
+	/*
+	 * returns a tree for a match of the whole field, accepting at least the fields
+	 * accepted by the definition : the atomic groups and possessive quantifiers are
+	 * read as plain ones, \b, \B and the assertions inside the regex as always true
+	 */
+	public static RegexNode parseSuperset(String def) throws UnsupportedRegexException {
+		return withoutAssertions(parse(def, true), true, true, true);
+	}
+
+	// returns the tree of the definition, assertions included
+	public static RegexNode parse(String def) throws UnsupportedRegexException {
+		return parse(def, false);
+	}
+
+	private static RegexNode parse(String def, boolean superset) throws UnsupportedRegexException {
+
+		RegexParser parser = new RegexParser(def, superset);
+		RegexNode node = parser.parseAlternation();
+
+		if (parser.pos != def.length()) {
+			throw new UnsupportedRegexException("unexpected ')' at " + parser.pos);
+		}
+		return node;
+	}
+
+	private static RegexNode withoutAssertions(RegexNode node, boolean atStart, boolean atEnd, boolean superset)
+			throws UnsupportedRegexException {
+
+		List<RegexNode> children = new ArrayList<RegexNode>();
+		boolean holds;
+
+		switch (node.getType()) {
+
+		case RegexNode.CONCAT:
+			List<RegexNode> nodes = node.getChildren();
+
+			for (int i = 0; i < nodes.size(); i++) {
+				children.add(withoutAssertions(nodes.get(i), atStart && onlyAssertions(nodes.subList(0, i)),
+						atEnd && onlyAssertions(nodes.subList(i + 1, nodes.size())), superset));
+			}
+			return RegexNode.of(RegexNode.CONCAT, children);
+
+		case RegexNode.ALTERNATION:
+			for (RegexNode child : node.getChildren()) {
+				children.add(withoutAssertions(child, atStart, atEnd, superset));
+			}
+			return RegexNode.of(RegexNode.ALTERNATION, children);
+
+		case RegexNode.REPEAT:
+			return RegexNode.repeat(withoutAssertions(node.getChildren().get(0), false, false, superset),
+					node.getMin(), node.getMax());
+
+		case RegexNode.START:
+		case RegexNode.LOOKBEHIND:
+		case RegexNode.NEGATIVE_LOOKBEHIND:
+			if (!atStart && superset) {
+				return RegexNode.empty();
+			} else if (!atStart) {
+				throw new UnsupportedRegexException("assertion which is not at the beginning");
+			}
+			holds = node.getType() == RegexNode.START || lookaroundHoldsAtEdge(node);
+			return holds ? RegexNode.empty() : RegexNode.chars(CharRanges.NONE);
+
+		case RegexNode.END:
+		case RegexNode.LOOKAHEAD:
+		case RegexNode.NEGATIVE_LOOKAHEAD:
+			if (!atEnd && superset) {
+				return RegexNode.empty();
+			} else if (!atEnd) {
+				throw new UnsupportedRegexException("assertion which is not at the end");
+			}
+			holds = node.getType() == RegexNode.END || lookaroundHoldsAtEdge(node);
+			return holds ? RegexNode.empty() : RegexNode.chars(CharRanges.NONE);
+
+		default:
+			return node;
+		}
+	}
+
+	// beyond the edge of the field, only the empty string can be matched
+	private static boolean lookaroundHoldsAtEdge(RegexNode node) throws UnsupportedRegexException {
+
+		boolean nullable = withoutAssertions(node.getChildren().get(0), false, false, false).isNullable();
+		boolean negative = node.getType() == RegexNode.NEGATIVE_LOOKAHEAD
+				|| node.getType() == RegexNode.NEGATIVE_LOOKBEHIND;
+
+		return negative ? !nullable : nullable;
+	}
+
+	private static boolean onlyAssertions(List<RegexNode> nodes) {
+
+		for (RegexNode node : nodes) {
+			if (!node.isAssertion() && node.getType() != RegexNode.EMPTY) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean atEnd() {
+		return pos >= def.length();
+	}
+
+	private char peek() {
+		return def.charAt(pos);
+	}
+
+	private RegexNode parseAlternation() throws UnsupportedRegexException {
+
+		List<RegexNode> branches = new ArrayList<RegexNode>();
+
+		branches.add(parseConcat());
+
+		while (!atEnd() && peek() == '|') {
+			pos++;
+			branches.add(parseConcat());
+		}
+
+		return (branches.size() == 1) ? branches.get(0) : RegexNode.of(RegexNode.ALTERNATION, branches);
+	}
+
+	private RegexNode parseConcat() throws UnsupportedRegexException {
+
+		List<RegexNode> items = new ArrayList<RegexNode>();
+
+		while (!atEnd() && peek() != '|' && peek() != ')') {
+			items.add(parseQuantifier(parseAtom()));
+		}
+
+		if (items.isEmpty()) {
+			return RegexNode.empty();
+		}
+		return (items.size() == 1) ? items.get(0) : RegexNode.of(RegexNode.CONCAT, items);
+	}
+
+	private RegexNode parseQuantifier(RegexNode atom) throws UnsupportedRegexException {
+
+		int min, max;
+
+		if (atEnd()) {
+			return atom;
+		}
+
+		switch (peek()) {
+		case '*':
+			min = 0;
+			max = -1;
+			pos++;
+			break;
+		case '+':
+			min = 1;
+			max = -1;
+			pos++;
+			break;
+		case '?':
+			min = 0;
+			max = 1;
+			pos++;
+			break;
+		case '{':
+			pos++;
+			min = parseNumber();
+			max = min;
+			if (!atEnd() && peek() == ',') {
+				pos++;
+				max = (!atEnd() && peek() == '}') ? -1 : parseNumber();
+			}
+			if (atEnd() || peek() != '}' || (max != -1 && max < min)) {
+				throw new UnsupportedRegexException("bad repetition at " + pos);
+			}
+			pos++;
+			break;
+		default:
+			return atom;
+		}
+
+		if (atom.isAssertion()) {
+			throw new UnsupportedRegexException("quantified assertion");
+		}
+
+		// a lazy quantifier accepts the same whole fields as a greedy one, not a possessive one
+		if (!atEnd() && peek() == '?') {
+			pos++;
+		} else if (!atEnd() && peek() == '+' && superset) {
+			pos++;
+		} else if (!atEnd() && peek() == '+') {
+			throw new UnsupportedRegexException("possessive quantifier");
+		}
+
+		if (!atEnd() && "*+?{".indexOf(peek()) != -1) {
+			throw new UnsupportedRegexException("double quantifier");
+		}
+
+		return RegexNode.repeat(atom, min, max);
+	}
+
+	private int parseNumber() throws UnsupportedRegexException {
+
+		int start = pos;
+
+		// at most 4 digits (MAX_REPEAT), a fifth one makes the bound too big
+		while (!atEnd() && peek() >= '0' && peek() <= '9' && pos - start < 5) {
+			pos++;
+		}
+
+		if (pos == start || pos - start == 5 || Integer.parseInt(def.substring(start, pos)) > MAX_REPEAT) {
+			throw new UnsupportedRegexException("bad repetition bound at " + start);
+		}
+		return Integer.parseInt(def.substring(start, pos));
+	}
+
+	private RegexNode parseAtom() throws UnsupportedRegexException {
+
+		char c = peek();
+		pos++;
+
+		switch (c) {
+		case '(':
+			return parseGroup();
+		case '[':
+			return RegexNode.chars(parseClass());
+		case '.':
+			return RegexNode.chars(CharRanges.DOT);
+		case '^':
+			return RegexNode.of(RegexNode.START, new ArrayList<RegexNode>());
+		case '$':
+			return RegexNode.of(RegexNode.END, new ArrayList<RegexNode>());
+		case '\\':
+			if (superset && !atEnd() && (peek() == 'b' || peek() == 'B')) {
+				pos++;
+				return RegexNode.empty();
+			}
+			return RegexNode.chars(parseEscape());
+		case '*':
+		case '+':
+		case '?':
+		case '{':
+			throw new UnsupportedRegexException("dangling meta character " + c);
+		default:
+			return RegexNode.chars(literal(c));
+		}
+	}
+
+	private RegexNode parseGroup() throws UnsupportedRegexException {
+
+		int type = -1;
+
+		if (def.startsWith("?:", pos)) {
+			pos += 2;
+		} else if (def.startsWith("?=", pos)) {
+			type = RegexNode.LOOKAHEAD;
+			pos += 2;
+		} else if (def.startsWith("?!", pos)) {
+			type = RegexNode.NEGATIVE_LOOKAHEAD;
+			pos += 2;
+		} else if (def.startsWith("?<=", pos)) {
+			type = RegexNode.LOOKBEHIND;
+			pos += 3;
+		} else if (def.startsWith("?<!", pos)) {
+			type = RegexNode.NEGATIVE_LOOKBEHIND;
+			pos += 3;
+		} else if (def.startsWith("?>", pos) && superset) {
+			pos += 2;
+		} else if (def.startsWith("?<", pos)) {
+			// named group : the name doesn't change what is matched
+			int endName = def.indexOf('>', pos);
+			if (endName == -1) {
+				throw new UnsupportedRegexException("bad group name at " + pos);
+			}
+			pos = endName + 1;
+		} else if (!atEnd() && peek() == '?') {
+			throw new UnsupportedRegexException("group (?" + def.charAt(Math.min(pos + 1, def.length() - 1)) + "...)");
+		}
+
+		RegexNode content = parseAlternation();
+
+		if (atEnd() || peek() != ')') {
+			throw new UnsupportedRegexException("unclosed group");
+		}
+		pos++;
+
+		if (type == -1) {
+			return content;
+		}
+
+		List<RegexNode> children = new ArrayList<RegexNode>();
+		children.add(content);
+		return RegexNode.of(type, children);
+	}
+
+	// [...] : the '[' has been read
+	private int[] parseClass() throws UnsupportedRegexException {
+
+		int[] ranges = CharRanges.NONE;
+		boolean negated = false;
+		boolean afterSet = false;
+		int lo, hi;
+
+		if (!atEnd() && peek() == '^') {
+			negated = true;
+			pos++;
+		}
+
+		if (!atEnd() && peek() == ']') {
+			throw new UnsupportedRegexException("']' at the beginning of a class");
+		}
+
+		while (true) {
+
+			if (atEnd()) {
+				throw new UnsupportedRegexException("unclosed class");
+			}
+
+			char c = peek();
+			pos++;
+
+			if (c == ']') {
+				break;
+			}
+
+			if (c == '[' || (c == '&' && !atEnd() && peek() == '&')) {
+				throw new UnsupportedRegexException("nested class or intersection");
+			}
+
+			if (c == '-' && afterSet && !atEnd() && peek() != ']') {
+				throw new UnsupportedRegexException("ambiguous '-' in a class");
+			}
+
+			int[] item = (c == '\\') ? parseEscape() : literal(c);
+
+			// a single char may start a range
+			if (item.length == 2 && item[0] == item[1] && !atEnd() && peek() == '-'
+					&& pos + 1 < def.length() && def.charAt(pos + 1) != ']') {
+
+				pos++;
+				lo = item[0];
+				char d = peek();
+				pos++;
+
+				if (d == '[') {
+					throw new UnsupportedRegexException("nested class");
+				}
+				int[] end = (d == '\\') ? parseEscape() : literal(d);
+
+				if (end.length != 2 || end[0] != end[1] || end[0] < lo) {
+					throw new UnsupportedRegexException("bad range in a class");
+				}
+				hi = end[0];
+				item = CharRanges.of(lo, hi);
+				afterSet = true;
+			} else {
+				afterSet = !(item.length == 2 && item[0] == item[1]);
+			}
+
+			ranges = CharRanges.union(ranges, item);
+		}
+
+		return negated ? CharRanges.complement(ranges) : ranges;
+	}
+
+	// \x : the '\' has been read
+	private int[] parseEscape() throws UnsupportedRegexException {
+
+		if (atEnd()) {
+			throw new UnsupportedRegexException("trailing '\\'");
+		}
+
+		char c = peek();
+		pos++;
+
+		switch (c) {
+		case 'd':
+			return CharRanges.DIGIT;
+		case 'D':
+			return CharRanges.complement(CharRanges.DIGIT);
+		case 'w':
+			return CharRanges.WORD;
+		case 'W':
+			return CharRanges.complement(CharRanges.WORD);
+		case 's':
+			return CharRanges.SPACE;
+		case 'S':
+			return CharRanges.complement(CharRanges.SPACE);
+		case 't':
+			return literal('\t');
+		case 'n':
+			return literal('\n');
+		case 'r':
+			return literal('\r');
+		case 'f':
+			return literal('\f');
+		case 'a':
+			return literal('\u0007');
+		case 'e':
+			return literal('\u001B');
+		case 'x':
+			return literal(parseHex(2));
+		case 'u':
+			return literal(parseHex(4));
+		case '0':
+			return literal(parseOctal());
+		default:
+			if (Character.isLetterOrDigit(c)) {
+				throw new UnsupportedRegexException("escape \\" + c);
+			}
+			return literal(c);
+		}
+	}
+
+	private int parseHex(int nbDigits) throws UnsupportedRegexException {
+
+		if (pos + nbDigits > def.length()) {
+			throw new UnsupportedRegexException("bad hexadecimal escape");
+		}
+
+		try {
+			int value = Integer.parseInt(def.substring(pos, pos + nbDigits), 16);
+			pos += nbDigits;
+			return value;
+		} catch (NumberFormatException e) {
+			throw new UnsupportedRegexException("bad hexadecimal escape");
+		}
+	}
+
+	// \0n, \0nn or \0mnn (m <= 3)
+	private int parseOctal() throws UnsupportedRegexException {
+
+		int value = 0;
+		int nbDigits = 0;
+		int maxDigits = (!atEnd() && peek() >= '0' && peek() <= '3') ? 3 : 2;
+
+		while (nbDigits < maxDigits && !atEnd() && peek() >= '0' && peek() <= '7') {
+			value = value * 8 + (peek() - '0');
+			pos++;
+			nbDigits++;
+		}
+
+		if (nbDigits == 0) {
+			throw new UnsupportedRegexException("bad octal escape");
+		}
+		return value;
+	}
+
+	private static int[] literal(int c) throws UnsupportedRegexException {
+
+		// a char outside the BMP is matched as a code point by java.util.regex
+		if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+			throw new UnsupportedRegexException("surrogate char");
+		}
+		return CharRanges.of(c, c);
+	}
+}
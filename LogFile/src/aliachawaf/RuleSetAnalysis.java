@@ -0,0 +1,387 @@
+package aliachawaf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.csv.CSVRecord;
+
+/*
+ * one analysis of lines with a CompiledRuleSet : finds the first pattern of the
+ * file matching each line (with the options chosen : adaptive field order,
+ * caches, frequency order, multi-regex, dispatch) and keeps what the run
+ * produces : the number of lines matching each pattern, the lines matching no
+ * pattern and the match timeouts. Not thread-safe : each thread has its own
+ * analysis, and the analyses of the threads are merged at the end. The rule
+ * set is only read : what is kept here is the state of the run (the orders
+ * learnt, the candidates and the patterns tried on the current line)
+ */
+public class RuleSetAnalysis {
+
+	// index returned when no pattern matches the line
+	private static final int NO_MATCH = -1;
+
+	private CompiledRuleSet ruleSet;
+
+	// results of the regex on the fields of the current line, shared by all the patterns
+	private FieldMatchMemo fieldMatchMemo;
+
+	// adaptive mode : the fields of each pattern are checked by decreasing rejection rate per nanosecond
+	// (fieldOrders[index of the pattern] is created the first time the pattern is checked)
+	private boolean adaptiveFieldOrder;
+	private FieldOrder[] fieldOrders;
+
+	// optional cache of the results of the regex on the values met on previous lines
+	private FieldValueCache fieldValueCache;
+
+	// optional cache of the results of the recent lines, for the lines repeating identically
+	private LineResultCache lineResultCache;
+
+	// frequency mode (profile != null) : the most frequent patterns are tried first, with
+	// patternOrders[number of fields] created the first time a line has this number of fields
+	private PatternProfile patternProfile;
+	private PatternOrder[] patternOrders;
+
+	// multi-regex mode : the patterns of each number of fields are found by intersecting,
+	// column by column, the patterns accepting the field (see PatternSetMatcher), with
+	// searches[number of fields] created the first time a line has this number of fields
+	private boolean multiRegexMatching;
+	private PatternSetMatcher.Search[] searches;
+
+	// nbLinesMatching[index of the pattern] : number of lines whose first matching pattern is this one
+	private int[] nbLinesMatching;
+	private int nbLinesNonMatching;
+
+	// the lines matching no pattern, kept until the caller clears them
+	private List<CSVRecord> nonMatchingLines;
+
+	// the fields whose regex ran out of time (see ListRegexp.setMatchTimeout)
+	private MatchTimeoutReport matchTimeoutReport;
+
+	// constructor : see CompiledRuleSet.newAnalysis
+	RuleSetAnalysis(CompiledRuleSet ruleSet) {
+		this.ruleSet = ruleSet;
+		this.fieldMatchMemo = new FieldMatchMemo(ruleSet);
+		this.adaptiveFieldOrder = false;
+		this.fieldOrders = new FieldOrder[ruleSet.getNbPatterns()];
+		this.fieldValueCache = null;
+		this.lineResultCache = null;
+		this.patternProfile = null;
+		this.patternOrders = new PatternOrder[0];
+		this.multiRegexMatching = false;
+		this.searches = new PatternSetMatcher.Search[0];
+		this.nbLinesMatching = new int[ruleSet.getNbPatterns()];
+		this.nbLinesNonMatching = 0;
+		this.nonMatchingLines = new ArrayList<CSVRecord>();
+		this.matchTimeoutReport = new MatchTimeoutReport();
+	}
+
+	// getters
+	public CompiledRuleSet getRuleSet() {
+		return ruleSet;
+	}
+
+	public FieldValueCache getFieldValueCache() {
+		return fieldValueCache;
+	}
+
+	public LineResultCache getLineResultCache() {
+		return lineResultCache;
+	}
+
+	public int getNbLinesMatching(int pattern) {
+		return nbLinesMatching[pattern];
+	}
+
+	public int getNbLinesNonMatching() {
+		return nbLinesNonMatching;
+	}
+
+	public List<CSVRecord> getNonMatchingLines() {
+		return nonMatchingLines;
+	}
+
+	public MatchTimeoutReport getMatchTimeoutReport() {
+		return matchTimeoutReport;
+	}
+
+	// setters : the options have to be chosen before the first line is analysed
+	public void setAdaptiveFieldOrder(boolean adaptiveFieldOrder) {
+		this.adaptiveFieldOrder = adaptiveFieldOrder;
+	}
+
+	public void setFieldValueCache(FieldValueCache fieldValueCache) {
+		this.fieldValueCache = fieldValueCache;
+		this.fieldMatchMemo.setFieldValueCache(fieldValueCache);
+	}
+
+	public void setLineResultCache(LineResultCache lineResultCache) {
+		this.lineResultCache = lineResultCache;
+	}
+
+	// the profile can be shared by the analyses of several threads
+	public void setPatternProfile(PatternProfile patternProfile) {
+		this.patternProfile = patternProfile;
+	}
+
+	// the multi-regex mode replaces the dispatch and the frequency order
+	public void setMultiRegexMatching(boolean multiRegexMatching) {
+		this.multiRegexMatching = multiRegexMatching;
+	}
+
+	// forget the non-matching lines kept so far (once the caller has recorded them)
+	public void clearNonMatchingLines() {
+		nonMatchingLines.clear();
+	}
+
+	// returns the first pattern of the file which matches the line, null if none matches, and counts it
+	public LogPattern analyse(CSVRecord line) {
+
+		int patternMatching = this.patternMatchingLine(line);
+
+		if (patternMatching == NO_MATCH) {
+			nbLinesNonMatching++;
+			nonMatchingLines.add(line);
+			return null;
+		}
+		nbLinesMatching[patternMatching]++;
+		return ruleSet.getPattern(patternMatching);
+	}
+
+	/*
+	 * adds the results of another analysis of the same rule set to this one : the
+	 * counts, the non-matching lines (after the ones of this analysis), the
+	 * timeouts and the hits of the caches
+	 */
+	public void merge(RuleSetAnalysis other) {
+
+		if (other.ruleSet != this.ruleSet) {
+			throw new IllegalArgumentException("The analyses don't use the same rule set");
+		}
+
+		for (int p = 0; p < nbLinesMatching.length; p++) {
+			nbLinesMatching[p] += other.nbLinesMatching[p];
+		}
+		nbLinesNonMatching += other.nbLinesNonMatching;
+		nonMatchingLines.addAll(other.nonMatchingLines);
+		matchTimeoutReport.merge(other.matchTimeoutReport);
+
+		if (fieldValueCache != null && other.fieldValueCache != null && other.fieldValueCache != fieldValueCache) {
+			fieldValueCache.mergeStats(other.fieldValueCache);
+		}
+		if (lineResultCache != null && other.lineResultCache != null && other.lineResultCache != lineResultCache) {
+			lineResultCache.mergeStats(other.lineResultCache);
+		}
+	}
+
+	// returns the index of the first pattern of the file which matches the line, NO_MATCH if none matches
+	private int patternMatchingLine(CSVRecord line) {
+
+		int patternMatching;
+		Integer cachedResult = null;
+
+		// an identical line has been analysed recently, its result is the same
+		if (this.lineResultCache != null) {
+			cachedResult = this.lineResultCache.get(line);
+		}
+
+		if (cachedResult != null) {
+
+			if (cachedResult == LineResultCache.NO_MATCH) {
+				return NO_MATCH;
+			}
+
+			if (this.patternProfile != null) {
+				this.patternProfile.recordHit(ruleSet.getPattern(cachedResult));
+			}
+			return cachedResult;
+		}
+
+		this.fieldMatchMemo.newLine(line.size());
+
+		// search the first pattern of the file matching the line
+		if (this.multiRegexMatching) {
+			patternMatching = this.firstPatternMatchingBySet(line);
+		} else if (this.patternProfile == null) {
+			patternMatching = this.firstPatternMatching(line);
+		} else {
+			patternMatching = this.firstPatternMatchingByFrequency(line);
+		}
+
+		// a line which ran out of time isn't cached : its duplicates are checked (and reported) again
+		if (this.lineResultCache != null && !this.fieldMatchMemo.hasTimedOut()) {
+			this.lineResultCache.put(line, (patternMatching == NO_MATCH) ? LineResultCache.NO_MATCH : patternMatching);
+		}
+
+		return patternMatching;
+	}
+
+	// returns the index of the first pattern of the file which matches the line, NO_MATCH if none matches
+	private int firstPatternMatching(CSVRecord line) {
+
+		PatternDispatch dispatch = ruleSet.getDispatch(line.size());
+		int[] candidates;
+
+		// the patterns having the same number of fields than the line, or only the ones
+		// which can accept the value of its dispatch column
+		if (dispatch == null) {
+			candidates = ruleSet.getPatternsByNbFields(line.size());
+		} else {
+			candidates = dispatch.getCandidates(line.get(dispatch.getColumn()));
+		}
+
+		// make the comparison for each candidate pattern
+		for (int pattern : candidates) {
+
+			if (this.matchesPattern(line, pattern)) {
+				return pattern;
+			}
+		}
+		return NO_MATCH;
+	}
+
+	// same result as firstPatternMatching, found with the matcher of the rule set (see PatternSetMatcher)
+	private int firstPatternMatchingBySet(CSVRecord line) {
+
+		if (line.size() >= this.searches.length) {
+			this.searches = Arrays.copyOf(this.searches, line.size() + 1);
+		}
+
+		if (this.searches[line.size()] == null) {
+
+			PatternSetMatcher matcher = ruleSet.getPatternSetMatcher(line.size());
+
+			if (matcher == null) {
+				return NO_MATCH;
+			}
+			this.searches[line.size()] = matcher.newSearch();
+		}
+
+		return this.searches[line.size()].firstMatching(line, this.fieldMatchMemo, this.matchTimeoutReport);
+	}
+
+	/*
+	 * same result as firstPatternMatching, but the patterns are tried from the most
+	 * frequent one. Once a pattern matches, the patterns placed before it in the
+	 * file and not tried yet are checked too (unless they can't match the same
+	 * lines), so that the first pattern of the file still wins
+	 */
+	private int firstPatternMatchingByFrequency(CSVRecord line) {
+
+		if (line.size() >= this.patternOrders.length) {
+			this.patternOrders = Arrays.copyOf(this.patternOrders, line.size() + 1);
+		}
+
+		PatternOrder patternOrder = this.patternOrders[line.size()];
+		int patternMatching = NO_MATCH;
+
+		if (patternOrder == null) {
+			patternOrder = new PatternOrder(ruleSet.getPatternsByNbFields(line.size()), ruleSet, this.patternProfile);
+			this.patternOrders[line.size()] = patternOrder;
+		}
+
+		patternOrder.newLine();
+
+		for (int pattern : patternOrder.getCandidates()) {
+
+			if (this.matchesPattern(line, pattern)) {
+				patternMatching = pattern;
+				break;
+			}
+			patternOrder.markTried(pattern);
+		}
+
+		if (patternMatching != NO_MATCH) {
+
+			for (int earlier : ruleSet.getEarlierOverlapping(patternMatching)) {
+
+				if (!patternOrder.isTried(earlier) && this.matchesPattern(line, earlier)) {
+					patternMatching = earlier;
+					break;
+				}
+			}
+
+			this.patternProfile.recordHit(ruleSet.getPattern(patternMatching));
+		}
+
+		return patternMatching;
+	}
+
+	// returns true if each field of the line matches the regex expected by the pattern
+	private boolean matchesPattern(CSVRecord line, int pattern) {
+
+		if (!this.adaptiveFieldOrder) {
+
+			// for each field of the current line, we check if it matches the regex expected
+			for (int i = 0; i < line.size(); i++) {
+
+				// if one field doesn't match so the entire line doesn't match too, we stop here
+				if (!this.fieldMatches(line, i, pattern)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		FieldOrder fieldOrder = this.fieldOrders[pattern];
+
+		if (fieldOrder == null) {
+			fieldOrder = new FieldOrder(line.size());
+			this.fieldOrders[pattern] = fieldOrder;
+		}
+
+		// same check, but the fields which reject the most often for the time they take are
+		// checked first (a sample of the checks is timed)
+		int[] order = fieldOrder.getOrder();
+		boolean timed = fieldOrder.isCostSampled();
+		boolean fieldMatches = true;
+		long start = 0;
+
+		for (int k = 0; k < order.length && fieldMatches; k++) {
+
+			if (timed) {
+				start = System.nanoTime();
+			}
+
+			fieldMatches = this.fieldMatches(line, order[k], pattern);
+
+			if (timed) {
+				fieldOrder.recordCost(order[k], System.nanoTime() - start);
+			}
+			fieldOrder.recordCheck(order[k], fieldMatches);
+		}
+
+		fieldOrder.recordPatternCheck();
+
+		return fieldMatches;
+	}
+
+	// check the field i of the line, a field whose regex runs out of time doesn't match
+	private boolean fieldMatches(CSVRecord line, int i, int pattern) {
+
+		try {
+			return this.fieldMatchMemo.matches(i, ruleSet.getRegexId(pattern, i), line.get(i));
+		} catch (MatchTimeoutException e) {
+			this.matchTimeoutReport.recordTimeout(ruleSet.getRegexName(pattern, i), ruleSet.getPattern(pattern),
+					line.getRecordNumber());
+			return false;
+		}
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder sb = new StringBuilder();
+		int nbLines = nbLinesNonMatching;
+
+		for (int count : nbLinesMatching) {
+			nbLines += count;
+		}
+		for (int p = 0; p < ruleSet.getNbPatterns(); p++) {
+			LogPattern pattern = ruleSet.getPattern(p);
+			sb.append(pattern.getLogInfos()[0]).append(pattern.getLogInfos()[2]).append(": ")
+					.append(nbLinesMatching[p]).append(" / ").append(nbLines).append("\n");
+		}
+		return sb.toString();
+	}
+}
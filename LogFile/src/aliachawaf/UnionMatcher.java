@@ -0,0 +1,25 @@
+package aliachawaf;
+
+import java.util.List;
+
+// matches the fields matched by at least one of its matchers
+public class UnionMatcher implements FieldMatcher {
+
+	private FieldMatcher[] matchers;
+
+	// constructor : the cheapest matchers should come first
+	public UnionMatcher(List<FieldMatcher> matchers) {
+		this.matchers = matchers.toArray(new FieldMatcher[matchers.size()]);
+	}
+
+	@Override
+	public boolean matches(String field) {
+
+		for (FieldMatcher matcher : matchers) {
+			if (matcher.matches(field)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
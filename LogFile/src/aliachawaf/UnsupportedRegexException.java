@@ -0,0 +1,11 @@
+package aliachawaf;
+
+// thrown by RegexParser when a definition uses a construct it doesn't handle
+public class UnsupportedRegexException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	public UnsupportedRegexException(String message) {
+		super(message);
+	}
+}
@@ -6,16 +6,47 @@ import java.util.Scanner;
 
 public class AnalyseLogfile {
 
+	// number of values per column kept in the cache of regex results
+	private static final int FIELD_CACHE_SIZE = 4096;
+
 	public static void main(String[] args) {
 
 		Scanner scanner = new Scanner(System.in);
 
+		// streaming mode (argument -streaming) : the file is read while it is analysed, not loaded first
+		boolean streaming = false;
+
+		// cache of the regex results by field value (argument -fieldCache), off by default
+		boolean fieldCache = false;
+
+		// lazy mode (argument -lazyRegexp) : only the definitions used by the patterns are compiled
+		boolean lazyRegexp = false;
+
+		for (String arg : args) {
+			if (arg.equals("-streaming")) {
+				streaming = true;
+			} else if (arg.equals("-fieldCache")) {
+				fieldCache = true;
+			} else if (arg.equals("-lazyRegexp")) {
+				lazyRegexp = true;
+			} else {
+				throw new IllegalArgumentException(
+						"Unknown argument " + arg + " (-streaming, -fieldCache or -lazyRegexp expected)");
+			}
+		}
+
 		ListRegexp listRegexp = new ListRegexp();
+		listRegexp.setLazyCompilation(lazyRegexp);
 		listRegexp.setListRegexp("expandedREDefs.txt");
 
 		ListLogPatterns listLogPatterns = new ListLogPatterns();
 		listLogPatterns.setListPatterns("LogPatterns.txt");
 
+		if (lazyRegexp) {
+			listRegexp.compileDefinitions(listLogPatterns.getReferencedRegexNames());
+		}
+		listLogPatterns.resolveRegexIds(listRegexp);
+
 		boolean fileNotFound = true;
 		boolean checkNotException = false;
 		String fileName;
@@ -32,15 +63,28 @@ public class AnalyseLogfile {
 
 			fileName = scanner.nextLine();
 			logFile = new Logfile(fileName);
+
+			if (fieldCache) {
+				logFile.setFieldValueCache(new FieldValueCache(FIELD_CACHE_SIZE));
+			}
+
+			// in streaming mode, the ranges of lines are reached with an index saved next to the file
+			logFile.setLineOffsetIndex(streaming);
 			
 			System.out.print("Enter the delimiter (separator) used in your file : ");
 			delimiter = scanner.nextLine().charAt(0);
-			logFile.setFields(delimiter);
 
 			File file = new File(fileName);
 
+			// checked before the lines are loaded, so that the message is the same in both modes
 			if (Files.isReadable(file.toPath()) && !fileName.matches("")) {
 				fileNotFound = false;
+
+				if (!streaming) {
+					logFile.setFields(delimiter);
+				}
+			} else {
+				System.out.print("File not found ! Please check your input (path) and re-enter it : ");
 			}
 		} while (fileNotFound);
 
@@ -112,7 +156,10 @@ public class AnalyseLogfile {
 		}
 
 		// lanch the comparison with all the patterns according to the lines entered
-		if (startLine <= finishLine) {
+		if (streaming) {
+			System.out.println("\n" + logFile.compareAllLogPatternsStreaming(listLogPatterns, listRegexp, delimiter,
+					Math.min(startLine, finishLine), Math.max(startLine, finishLine)));
+		} else if (startLine <= finishLine) {
 			System.out
 					.println("\n" + logFile.compareAllLogPatterns(listLogPatterns, listRegexp, startLine, finishLine));
 		} else {
@@ -0,0 +1,83 @@
+package aliachawaf;
+
+import java.util.Arrays;
+
+public class FieldMatchMemo {
+
+	private ListRegexp listRegexp;
+	private int nbDefinitions;
+
+	// optional cache of the results across lines, null if not used
+	private FieldValueCache fieldValueCache;
+
+	/*
+	 * the result of the regex of definition id on the field i of the current line
+	 * is results[i * nbDefinitions + id], valid only if stamps[i * nbDefinitions + id]
+	 * equals lineStamp : changing the stamp forgets all the results at once
+	 */
+	private int[] stamps;
+	private boolean[] results;
+	private int lineStamp;
+
+	// constructor
+	public FieldMatchMemo(ListRegexp listRegexp) {
+		this.listRegexp = listRegexp;
+		this.nbDefinitions = listRegexp.getListRegexp().size();
+		this.stamps = new int[0];
+		this.results = new boolean[0];
+		this.lineStamp = 1;
+		this.fieldValueCache = null;
+	}
+
+	// setter
+	public void setFieldValueCache(FieldValueCache fieldValueCache) {
+		this.fieldValueCache = fieldValueCache;
+	}
+
+	// forget the results of the previous line
+	public void newLine(int nbFields) {
+
+		lineStamp++;
+
+		if (lineStamp == 0) {
+			// the stamp has overflowed, the old stamps could be taken for the current one
+			Arrays.fill(stamps, 0);
+			lineStamp = 1;
+		}
+
+		if (stamps.length < nbFields * nbDefinitions) {
+			stamps = new int[nbFields * nbDefinitions];
+			results = new boolean[nbFields * nbDefinitions];
+		}
+	}
+
+	/*
+	 * check if the field number i of the current line matches the regex whose id is
+	 * in parameter. Each definition runs at most once per field and per line, even
+	 * if several patterns (or several names with the same definition) expect it
+	 */
+	public boolean matches(int i, int id, String field) {
+
+		int definitionId = listRegexp.getDefinitionId(id);
+		int k = i * nbDefinitions + definitionId;
+		Boolean cached;
+
+		if (stamps[k] != lineStamp) {
+
+			// the same value may have been checked on a previous line
+			cached = (fieldValueCache == null) ? null : fieldValueCache.get(i, definitionId, field);
+
+			if (cached != null) {
+				results[k] = cached;
+			} else {
+				results[k] = listRegexp.matches(id, field);
+
+				if (fieldValueCache != null) {
+					fieldValueCache.put(i, definitionId, field, results[k]);
+				}
+			}
+			stamps[k] = lineStamp;
+		}
+		return results[k];
+	}
+}
@@ -0,0 +1,148 @@
+package aliachawaf;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FieldValueCache {
+
+	// number of lookups after which a column with a low hit rate stops using the cache
+	private static final int NB_LOOKUPS_BEFORE_CHECK = 10000;
+	private static final double MIN_HIT_RATE = 0.2;
+
+	// maximum number of values kept per column, the least recently used is evicted
+	private int maxSizeByColumn;
+
+	/*
+	 * for each column (field index) : the cached results (definition id, value) ->
+	 * matches, the number of hits and misses, and whether the column opted out
+	 */
+	private List<Map<FieldValue, Boolean>> columns;
+	private List<long[]> nbHitsMisses;
+	private List<Boolean> disabled;
+
+	private long nbHits;
+	private long nbMisses;
+
+	// constructor
+	public FieldValueCache(int maxSizeByColumn) {
+		this.maxSizeByColumn = maxSizeByColumn;
+		this.columns = new ArrayList<Map<FieldValue, Boolean>>();
+		this.nbHitsMisses = new ArrayList<long[]>();
+		this.disabled = new ArrayList<Boolean>();
+		this.nbHits = 0;
+		this.nbMisses = 0;
+	}
+
+	// getters
+	public long getNbHits() {
+		return nbHits;
+	}
+
+	public long getNbMisses() {
+		return nbMisses;
+	}
+
+	public boolean isDisabled(int column) {
+		return column < disabled.size() && disabled.get(column);
+	}
+
+	// returns the cached result of the regex (by definition id) on the value of the column, null if unknown
+	public Boolean get(int column, int definitionId, String value) {
+
+		while (columns.size() <= column) {
+			this.addColumn();
+		}
+
+		if (disabled.get(column)) {
+			return null;
+		}
+
+		Boolean matches = columns.get(column).get(new FieldValue(definitionId, value));
+		long[] counters = nbHitsMisses.get(column);
+
+		if (matches != null) {
+			counters[0]++;
+			nbHits++;
+		} else {
+			counters[1]++;
+			nbMisses++;
+		}
+
+		// the values of this column don't repeat enough : the cache only costs time and memory
+		if (counters[0] + counters[1] == NB_LOOKUPS_BEFORE_CHECK
+				&& counters[0] < MIN_HIT_RATE * NB_LOOKUPS_BEFORE_CHECK) {
+			disabled.set(column, true);
+			columns.get(column).clear();
+		}
+
+		return matches;
+	}
+
+	public void put(int column, int definitionId, String value, boolean matches) {
+
+		if (!disabled.get(column)) {
+			columns.get(column).put(new FieldValue(definitionId, value), matches);
+		}
+	}
+
+	@Override
+	public String toString() {
+
+		String buffer = "field value cache : " + nbHits + " hits / " + (nbHits + nbMisses) + " lookups";
+
+		for (int column = 0; column < disabled.size(); column++) {
+
+			if (disabled.get(column)) {
+				buffer = buffer + "\n  column " + (column + 1) + " disabled (low hit rate)";
+			}
+		}
+		return buffer;
+	}
+
+	private void addColumn() {
+
+		// LinkedHashMap in access order evicts the least recently used value
+		columns.add(new LinkedHashMap<FieldValue, Boolean>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<FieldValue, Boolean> eldest) {
+				return size() > maxSizeByColumn;
+			}
+		});
+		nbHitsMisses.add(new long[2]);
+		disabled.add(false);
+	}
+
+	// key of the cache : a value and the definition of the regex it is checked against
+	private static final class FieldValue {
+
+		private final int definitionId;
+		private final String value;
+
+		private FieldValue(int definitionId, String value) {
+			this.definitionId = definitionId;
+			this.value = value;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * definitionId + value.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object other) {
+
+			if (!(other instanceof FieldValue)) {
+				return false;
+			}
+
+			FieldValue fieldValue = (FieldValue) other;
+
+			return definitionId == fieldValue.definitionId && value.equals(fieldValue.value);
+		}
+	}
+}
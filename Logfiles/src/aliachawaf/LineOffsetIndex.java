@@ -0,0 +1,300 @@
+package aliachawaf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/*
+ * sparse index of the records of a log file, saved next to it (<file>.idx) to be
+ * reused by the next analyses of a range of lines : it gives where the records
+ * numbered 1, 1 + STRIDE, 1 + 2 * STRIDE... start, in bytes and in chars, so an
+ * analysis opens the file close to its start line instead of parsing all the
+ * records before it.
+ *
+ * The file is only scanned up to the record asked for : the index covers the
+ * beginning of the file, and is extended from its last record when a later
+ * record is asked for (or when the file has been appended to).
+ *
+ * The index file is memory-mapped : a header, then the byte offset and the char
+ * offset of each record indexed. It is valid for the size and the modification
+ * time of the log file it was built on. When the file has only been appended to
+ * (same last bytes before the old size), the index is extended from its last
+ * record, otherwise it is built again.
+ *
+ * The records are found as CSVParser does with CSVFormat.DEFAULT : the line ends
+ * in a quoted field don't end the record, a quote opens a quoted field only at
+ * the beginning of the field, "" is a quote in a quoted field, the empty lines
+ * are not records (they belong to the record after them)
+ */
+public class LineOffsetIndex {
+
+	// one record out of STRIDE is indexed (the records before 1 + STRIDE are read from the beginning)
+	static final long STRIDE = 4096;
+
+	private static final long MAGIC = 0x4c4f47494459L;
+	private static final int FINGERPRINT_SIZE = 4096;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// offsets of the fields of the header, size of the header and of an entry
+	private static final int MAGIC_OFFSET = 0;
+	private static final int DELIMITER_OFFSET = 8;
+	private static final int FILE_SIZE_OFFSET = 16;
+	private static final int MODIFIED_OFFSET = 24;
+	private static final int FINGERPRINT_OFFSET = 32;
+	private static final int COUNT_OFFSET = 40;
+	private static final int COMPLETE_OFFSET = 48;
+	private static final int HEADER_SIZE = 56;
+	private static final int ENTRY_SIZE = 16;
+
+	private Path logPath;
+	private Path indexPath;
+	private byte delimiter;
+
+	// the mapped index file, its number of entries, and whether they cover the whole file
+	private MappedByteBuffer map;
+	private long count;
+	private boolean complete;
+
+	private LineOffsetIndex(Path logPath, char delimiter) {
+		this.logPath = logPath;
+		this.indexPath = Paths.get(logPath.toString() + ".idx");
+		this.delimiter = (byte) delimiter;
+		this.count = 0;
+		this.complete = false;
+	}
+
+	/*
+	 * returns the index of the log file covering at least the record in parameter,
+	 * loaded from <file>.idx if it is still valid, extended if the file has been
+	 * appended to or if the record is after the last one indexed, built otherwise
+	 * (and saved)
+	 */
+	public static LineOffsetIndex open(String fileName, char delimiter, long recordNumber) throws IOException {
+
+		LineOffsetIndex index = new LineOffsetIndex(Paths.get(fileName), delimiter);
+
+		index.load((recordNumber - 1) / STRIDE);
+		return index;
+	}
+
+	// getters
+	public long getNbEntries() {
+		return count;
+	}
+
+	public boolean isComplete() {
+		return complete;
+	}
+
+	// returns the number of the last record indexed at or before the record in parameter
+	public long recordBefore(long recordNumber) {
+		return 1 + STRIDE * this.entryBefore(recordNumber);
+	}
+
+	// returns the offset in bytes of the record given by recordBefore
+	public long byteOffsetBefore(long recordNumber) {
+		return (count == 0) ? 0 : map.getLong(HEADER_SIZE + ENTRY_SIZE * (int) this.entryBefore(recordNumber));
+	}
+
+	// returns the offset in chars (of the file decoded as UTF-8) of the record given by recordBefore
+	public long charOffsetBefore(long recordNumber) {
+		return (count == 0) ? 0 : map.getLong(HEADER_SIZE + ENTRY_SIZE * (int) this.entryBefore(recordNumber) + 8);
+	}
+
+	private long entryBefore(long recordNumber) {
+		return Math.max(0, Math.min((recordNumber - 1) / STRIDE, count - 1));
+	}
+
+	// loads the index, extended or built so that it has the entry in parameter (unless the file is shorter)
+	private void load(long neededEntry) throws IOException {
+
+		long fileSize = Files.size(logPath);
+		long modified = Files.getLastModifiedTime(logPath).toMillis();
+		FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+
+		try {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					Math.max(channel.size(), HEADER_SIZE));
+			long indexedSize = header.getLong(FILE_SIZE_OFFSET);
+			long nbEntries = header.getLong(COUNT_OFFSET);
+
+			boolean valid = header.getLong(MAGIC_OFFSET) == MAGIC && header.getLong(DELIMITER_OFFSET) == delimiter
+					&& nbEntries > 0 && channel.size() >= HEADER_SIZE + ENTRY_SIZE * nbEntries;
+
+			boolean unchanged = valid && indexedSize == fileSize && header.getLong(MODIFIED_OFFSET) == modified;
+
+			if (unchanged && (header.getLong(COMPLETE_OFFSET) != 0 || neededEntry < nbEntries)) {
+
+				// the file hasn't changed since the index was built, and the entry is indexed
+				this.map = header;
+				this.count = nbEntries;
+				this.complete = header.getLong(COMPLETE_OFFSET) != 0;
+
+			} else if (unchanged || (valid && indexedSize <= fileSize
+					&& header.getLong(FINGERPRINT_OFFSET) == this.fingerprint(indexedSize))) {
+
+				// the entry is after the last one indexed, or the file has been appended to : the
+				// records are indexed again from the last one indexed
+				this.build(channel, header, nbEntries - 1, neededEntry, fileSize, modified);
+
+			} else {
+				this.build(channel, header, 0, neededEntry, fileSize, modified);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/*
+	 * scans the log file from the record of the entry fromEntry (0 : from the
+	 * beginning) until the record of the entry toEntry or the end of the file,
+	 * writes the entries found from fromEntry, then the header
+	 */
+	private void build(FileChannel channel, MappedByteBuffer header, long fromEntry, long toEntry, long fileSize,
+			long modified) throws IOException {
+
+		long position = (fromEntry == 0) ? 0 : header.getLong(HEADER_SIZE + ENTRY_SIZE * (int) fromEntry);
+		long nbChars = (fromEntry == 0) ? 0 : header.getLong(HEADER_SIZE + ENTRY_SIZE * (int) fromEntry + 8);
+		long nbRecordsRead = STRIDE * fromEntry;
+		long recordStart = position;
+		long recordStartChars = nbChars;
+		boolean inQuotes = false;
+		boolean quoteInQuotes = false;
+		boolean fieldStart = true;
+		boolean lineEmpty = true;
+		boolean recordEndCR = false;
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		byte b;
+
+		// offsets in bytes and in chars of the records indexed from fromEntry
+		long[] offsets = new long[64];
+		int nbOffsets = 0;
+
+		// false once the scan stops at the record of toEntry, before the end of the file
+		boolean endReached = true;
+
+		FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ);
+
+		try {
+			log.position(position);
+
+			while (endReached && log.read(buffer) > 0) {
+
+				buffer.flip();
+
+				while (endReached && buffer.hasRemaining()) {
+
+					b = buffer.get();
+
+					// the next record starts after the end of the previous one, CR LF being one end
+					if (recordEndCR && b == '\n') {
+						recordStart++;
+						recordStartChars++;
+					}
+					recordEndCR = false;
+
+					if (quoteInQuotes) {
+						quoteInQuotes = false;
+						if (b == '"') {
+							position++;
+							nbChars++;
+							continue;
+						}
+						inQuotes = false;
+					}
+
+					if (inQuotes) {
+						quoteInQuotes = (b == '"');
+					} else if (b == '\n' || b == '\r') {
+						// end of a record, unless the line is empty
+						if (!lineEmpty) {
+							nbRecordsRead++;
+							recordStart = position + 1;
+							recordStartChars = nbChars + 1;
+							recordEndCR = (b == '\r');
+						}
+						lineEmpty = true;
+						fieldStart = true;
+					} else {
+						// the first char of the record numbered nbRecordsRead + 1
+						if (lineEmpty && nbRecordsRead % STRIDE == 0) {
+							if (nbOffsets == offsets.length) {
+								offsets = Arrays.copyOf(offsets, 2 * nbOffsets);
+							}
+							offsets[nbOffsets++] = recordStart;
+							offsets[nbOffsets++] = recordStartChars;
+
+							// the entry asked for is indexed, the rest of the file will be later if needed
+							if (fromEntry + nbOffsets / 2 > toEntry) {
+								endReached = false;
+							}
+						}
+						inQuotes = (b == '"' && fieldStart);
+						fieldStart = (b == delimiter);
+						lineEmpty = false;
+					}
+
+					// a char starts on each byte which doesn't continue a UTF-8 sequence, a
+					// sequence of 4 bytes is a surrogate pair
+					if ((b & 0xC0) != 0x80) {
+						nbChars += ((b & 0xF8) == 0xF0) ? 2 : 1;
+					}
+					position++;
+				}
+				buffer.clear();
+			}
+		} finally {
+			log.close();
+		}
+
+		// the entries found replace the ones from fromEntry
+		this.count = fromEntry + nbOffsets / 2;
+		this.complete = endReached;
+		this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + ENTRY_SIZE * Math.max(count, 1));
+
+		for (int k = 0; k < nbOffsets; k++) {
+			map.putLong(HEADER_SIZE + ENTRY_SIZE * (int) fromEntry + 8 * k, offsets[k]);
+		}
+
+		map.putLong(MAGIC_OFFSET, MAGIC);
+		map.putLong(DELIMITER_OFFSET, delimiter);
+		map.putLong(FILE_SIZE_OFFSET, fileSize);
+		map.putLong(MODIFIED_OFFSET, modified);
+		map.putLong(FINGERPRINT_OFFSET, this.fingerprint(fileSize));
+		map.putLong(COUNT_OFFSET, count);
+		map.putLong(COMPLETE_OFFSET, complete ? 1 : 0);
+		map.force();
+	}
+
+	// CRC of the bytes of the log file before the size in parameter, to check they haven't changed
+	private long fingerprint(long size) throws IOException {
+
+		long start = Math.max(0, size - FINGERPRINT_SIZE);
+		ByteBuffer bytes = ByteBuffer.allocate((int) (size - start));
+		CRC32 crc = new CRC32();
+
+		FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ);
+
+		try {
+			log.position(start);
+
+			while (bytes.hasRemaining() && log.read(bytes) > 0) {
+				// read until the buffer is full
+			}
+		} finally {
+			log.close();
+		}
+
+		crc.update(bytes.array(), 0, bytes.position());
+		crc.update((int) size);
+		return crc.getValue();
+	}
+}
@@ -5,15 +5,23 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class ListLogPatterns {
 
 	private List<LogPattern> listPatterns;
 
+	// patterns grouped by number of fields : patternsByNbFields.get(n) lists, in the
+	// order of the file, the patterns having n fields
+	private List<List<LogPattern>> patternsByNbFields;
+
 	// constructor
 	public ListLogPatterns() {
 		listPatterns = new ArrayList<LogPattern>();
+		patternsByNbFields = new ArrayList<List<LogPattern>>();
 	}
 
 	// getter
@@ -51,6 +59,7 @@ public class ListLogPatterns {
 				}
 
 				// we add the pattern found to the list
+				pattern.setIndex(this.listPatterns.size());
 				this.listPatterns.add(pattern);
 			}
 
@@ -59,5 +68,55 @@ public class ListLogPatterns {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+
+		this.groupByNbFields();
+	}
+
+	// fill the lists of patterns indexed by their number of fields
+	public void groupByNbFields() {
+
+		int nbFields;
+
+		this.patternsByNbFields = new ArrayList<List<LogPattern>>();
+
+		for (LogPattern pattern : this.listPatterns) {
+
+			nbFields = pattern.getListRegexName().size();
+
+			while (this.patternsByNbFields.size() <= nbFields) {
+				this.patternsByNbFields.add(new ArrayList<LogPattern>());
+			}
+
+			this.patternsByNbFields.get(nbFields).add(pattern);
+		}
+	}
+
+	// returns the patterns having the number of fields in parameter (empty list if there is none)
+	public List<LogPattern> getPatternsByNbFields(int nbFields) {
+
+		if (nbFields >= this.patternsByNbFields.size()) {
+			return Collections.emptyList();
+		}
+
+		return this.patternsByNbFields.get(nbFields);
+	}
+
+	// returns the names of the regex used by at least one pattern
+	public Set<String> getReferencedRegexNames() {
+
+		Set<String> names = new LinkedHashSet<String>();
+
+		for (LogPattern pattern : this.listPatterns) {
+			names.addAll(pattern.getListRegexName());
+		}
+		return names;
+	}
+
+	// resolve the regex names of all the patterns into ids of the list of regex
+	public void resolveRegexIds(ListRegexp listRegexp) {
+
+		for (LogPattern pattern : this.listPatterns) {
+			pattern.resolveRegexIds(listRegexp);
+		}
 	}
 }
@@ -1,7 +1,14 @@
 package aliachawaf;
 
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
@@ -11,17 +18,50 @@ public class ListRegexp {
 
 	private List<Regexp> listRegexp;
 
+	// index normalized name -> id of the regex (its position in listRegexp)
+	private Map<String, Integer> indexByName;
+
+	// registry id -> compiled regex, built by compileDefinitions once the file is read
+	private Pattern[] compiledRegexp;
+
+	// definitionIds[id] is the id of the first regex having the same definition as the regex id
+	private int[] definitionIds;
+
+	// lazy mode : setListRegexp doesn't compile the definitions, compileDefinitions(names)
+	// compiles the ones needed
+	private boolean lazyCompilation;
+
+	// each thread reuses one Matcher per compiled regex
+	private final ThreadLocal<Map<Pattern, Matcher>> matchers = ThreadLocal.withInitial(IdentityHashMap::new);
+
 	// constructor
 	public ListRegexp() {
 		listRegexp = new ArrayList<Regexp>();
+		indexByName = new HashMap<String, Integer>();
+		compiledRegexp = new Pattern[0];
+		definitionIds = new int[0];
+		lazyCompilation = false;
 	}
 
-	// getter
+	// getters
 	public List<Regexp> getListRegexp() {
 		return listRegexp;
 	}
 
-	// setter
+	public Pattern[] getCompiledRegexp() {
+		return compiledRegexp;
+	}
+
+	public boolean isLazyCompilation() {
+		return lazyCompilation;
+	}
+
+	// setter : the mode has to be chosen before the file is read
+	public void setLazyCompilation(boolean lazyCompilation) {
+		this.lazyCompilation = lazyCompilation;
+	}
+
+	// setter : the definitions of the file are already expanded, they are compiled unless in lazy mode
 	public void setListRegexp(String fileName) {
 
 		try {
@@ -39,8 +79,10 @@ public class ListRegexp {
 				// regexp[1] is the definition
 				Regexp re = new Regexp(regexp[0], regexp[1]);
 
-				// we add the couple name/definition found
+				// we add the couple name/definition found and index it by its name
+				// (if a name is defined twice, the last definition wins)
 				this.listRegexp.add(re);
+				this.indexByName.put(normalizeName(re.getName()), this.listRegexp.size() - 1);
 			}
 
 			b.close();
@@ -48,21 +90,128 @@ public class ListRegexp {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+
+		if (!this.lazyCompilation) {
+			this.compileDefinitions();
+		}
+	}
+
+	// compile all the definitions
+	public void compileDefinitions() {
+
+		boolean[] toCompile = new boolean[this.listRegexp.size()];
+
+		Arrays.fill(toCompile, true);
+		this.compileDefinitions(toCompile);
+	}
+
+	// compile only the definitions of the names in parameter (unknown names are ignored)
+	public void compileDefinitions(Collection<String> names) {
+		this.compileDefinitions(this.idsOf(names));
+	}
+
+	// returns toCompile, where toCompile[id] is true if the name of the regex id is in names
+	private boolean[] idsOf(Collection<String> names) {
+
+		boolean[] toCompile = new boolean[this.listRegexp.size()];
+
+		for (String name : names) {
+
+			if (this.getIdByName(name) != -1) {
+				toCompile[this.getIdByName(name)] = true;
+			}
+		}
+		return toCompile;
+	}
+
+	// compile each definition to compile once and register it under the id of its regex
+	// (the regex having the same definition share the same Pattern, the others stay null)
+	private void compileDefinitions(boolean[] toCompile) {
+
+		Map<String, Integer> idsByDef = new HashMap<String, Integer>();
+		Pattern[] patternsById = new Pattern[this.listRegexp.size()];
+		int[] definitionIdsById = new int[this.listRegexp.size()];
+		Integer definitionId;
+		Regexp re;
+
+		for (int id = 0; id < this.listRegexp.size(); id++) {
+
+			if (!toCompile[id]) {
+				definitionIdsById[id] = id;
+				continue;
+			}
+
+			re = this.listRegexp.get(id);
+			definitionId = idsByDef.get(re.getDefinition());
+
+			if (definitionId == null) {
+				definitionId = id;
+				patternsById[id] = Pattern.compile(re.getDefinition());
+				idsByDef.put(re.getDefinition(), id);
+			} else {
+				patternsById[id] = patternsById[definitionId];
+			}
+
+			definitionIdsById[id] = definitionId;
+		}
+
+		this.compiledRegexp = patternsById;
+		this.definitionIds = definitionIdsById;
+	}
+
+	// returns the id of the first regex having the same definition as the regex id
+	public int getDefinitionId(int id) {
+		return this.definitionIds[id];
 	}
 
 	// methods
 	public String getDefinitionByName(String name) {
 
-		String def = null;
+		int id = this.getIdByName(name);
 
-		for (Regexp re : this.listRegexp) {
+		return (id == -1) ? null : this.listRegexp.get(id).getDefinition();
+	}
 
-			if (re.getName().matches(name.toUpperCase())) {
-				def = re.getDefinition();
-			}
+	// returns the compiled regex corresponding to the name in parameter
+	public Pattern getPatternByName(String name) {
+
+		int id = this.getIdByName(name);
+
+		return (id == -1) ? null : this.compiledRegexp[id];
+	}
+
+	// returns the id of the regex corresponding to the name in parameter, -1 if unknown
+	public int getIdByName(String name) {
+
+		Integer id = this.indexByName.get(normalizeName(name));
+
+		return (id == null) ? -1 : id;
+	}
+
+	// names are looked up trimmed and in upper case
+	private static String normalizeName(String name) {
+		return name.trim().toUpperCase();
+	}
+
+	// check if the whole field matches the regex whose id is in parameter
+	public boolean matches(int id, String field) {
+		return this.matches(this.compiledRegexp[id], field);
+	}
+
+	// check if the whole field matches the compiled regex, reusing the Matcher of the current thread
+	public boolean matches(Pattern pattern, String field) {
+
+		Map<Pattern, Matcher> threadMatchers = this.matchers.get();
+		Matcher matcher = threadMatchers.get(pattern);
+
+		if (matcher == null) {
+			matcher = pattern.matcher(field);
+			threadMatchers.put(pattern, matcher);
+		} else {
+			matcher.reset(field);
 		}
 
-		return def;
+		return matcher.matches();
 	}
 
 	@Override
@@ -14,6 +14,12 @@ public class LogPattern {
 	private String[] logInfos;
 	private List<String> listRegexName;
 
+	// ids of the regex names in the ListRegexp, resolved once the files are loaded
+	private int[] regexIds;
+
+	// position of the pattern in the file of patterns
+	private int index;
+
 	// constructor
 	public LogPattern(String logIdentifier) {
 		logInfos = new String[3];
@@ -31,6 +37,36 @@ public class LogPattern {
 		return logInfos;
 	}
 
+	public int[] getRegexIds() {
+		return regexIds;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
+	// replace each regex name of the pattern by its id in the list of regex
+	public void resolveRegexIds(ListRegexp listRegexp) {
+
+		int[] ids = new int[listRegexName.size()];
+
+		for (int i = 0; i < ids.length; i++) {
+
+			ids[i] = listRegexp.getIdByName(listRegexName.get(i));
+
+			if (ids[i] == -1) {
+				throw new IllegalArgumentException("Unknown regex name %{" + listRegexName.get(i) + "} in pattern "
+						+ logInfos[0] + logInfos[2]);
+			}
+		}
+
+		this.regexIds = ids;
+	}
+
 	public void setLogInfos(String logIdentifier) {
 
 		String[] substrings = logIdentifier.split("-");                                                                                          
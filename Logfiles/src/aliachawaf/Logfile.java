@@ -3,12 +3,14 @@ package aliachawaf;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Pattern;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -17,15 +19,28 @@ import org.apache.commons.csv.CSVRecord;
 
 public class Logfile {
 
+	// file of the non-matching fields, and its header
+	private static final String NON_MATCHING_FILE = "InfosNonMatchingLines";
+	private static final String[] FILE_HEADER = { "file name", "line", "column", "pattern expected", "field expected",
+			"found" };
+
 	private String fileName;
 	private List<CSVRecord> listLines;
 	private List<String> nonMatching;
 
+	// optional cache of the results of the regex on the values met on previous lines
+	private FieldValueCache fieldValueCache;
+
+	// in streaming mode, the start line is reached with the index saved next to the file
+	private boolean lineOffsetIndex;
+
 	// constructor
 	public Logfile(String fileName) {
 		this.fileName = fileName;
 		this.listLines = new ArrayList<CSVRecord>();
 		this.nonMatching = new ArrayList<String>();
+		this.fieldValueCache = null;
+		this.lineOffsetIndex = false;
 	}
 
 	// getters & setters
@@ -41,6 +56,22 @@ public class Logfile {
 		return nonMatching;
 	}
 
+	public FieldValueCache getFieldValueCache() {
+		return fieldValueCache;
+	}
+
+	public void setFieldValueCache(FieldValueCache fieldValueCache) {
+		this.fieldValueCache = fieldValueCache;
+	}
+
+	public boolean isLineOffsetIndex() {
+		return lineOffsetIndex;
+	}
+
+	public void setLineOffsetIndex(boolean lineOffsetIndex) {
+		this.lineOffsetIndex = lineOffsetIndex;
+	}
+
 	// read the logfile and add its lines in the list
 	public void setFields(char delimiter) {
 
@@ -70,67 +101,70 @@ public class Logfile {
 	public int compareLogPattern(LogPattern pattern, ListRegexp listRegexp, int startLine, int finishLine) {
 
 		int nbLinesMatching = 0;
-		boolean matches = true;
-		boolean lineMatches = true;
-
-		String regexNameExpected;
-		String regexDefExpected;
-		String lineNonMatching;
+		FieldMatchMemo fieldMatchMemo = new FieldMatchMemo(listRegexp);
+		fieldMatchMemo.setFieldValueCache(this.fieldValueCache);
 
 		// we analyse each line of logfile
 		for (int l = startLine - 1; l < finishLine; l++) {
 
 			CSVRecord line = this.listLines.get(l);
-			// for (CSVRecord line : this.listLines) {
-
-			if (line.size() == pattern.getListRegexName().size()) {
-
-				// for each field of the current line, we check if it matches the regex expected
-				for (int i = 0; i < line.size(); i++) {
+			fieldMatchMemo.newLine(line.size());
 
-					regexNameExpected = pattern.getListRegexName().get(i);
-
-					// we get the definition of the regex from its name
-					regexDefExpected = listRegexp.getDefinitionByName(regexNameExpected);
+			if (line.size() == pattern.getListRegexName().size()
+					&& this.compareLine(line, l + 1, pattern, fieldMatchMemo, this.nonMatching)) {
+				nbLinesMatching++;
+			}
+		}
+		return nbLinesMatching;
+	}
 
-					// compare the current field of the line with the pattern's regex expected
-					matches = Pattern.matches(regexDefExpected, line.get(i));
+	/*
+	 * compare each field of the line (numbered lineNumber in the file) with the
+	 * regex expected by the pattern, which has the same number of fields. Each field
+	 * which doesn't match is added to the list nonMatching, returns true if the
+	 * whole line matches
+	 */
+	private boolean compareLine(CSVRecord line, int lineNumber, LogPattern pattern, FieldMatchMemo fieldMatchMemo,
+			List<String> nonMatching) {
 
-					if (!matches) {
+		boolean lineMatches = true;
+		String lineNonMatching;
 
-						lineNonMatching = (l + 1) + " " + (i + 1) + " " + pattern.getLogInfos()[0]
-								+ pattern.getLogInfos()[2] + pattern.getListRegexName().get(i) + " "
-								+ line.get(i);
+		// ids of the regex expected, resolved when the patterns were loaded
+		int[] regexIdsExpected = pattern.getRegexIds();
 
-						this.getNonMatching().add(lineNonMatching);
-						lineMatches = false;
-					}
-				}
+		// for each field of the current line, we check if it matches the regex expected
+		for (int i = 0; i < line.size(); i++) {
 
-				if (lineMatches) {
-					nbLinesMatching++;
-				} else {
-					// for the next line to analyse, we give matches its initial value
-					lineMatches = true;
-				}
+			// compare the current field of the line with the pattern's regex expected
+			if (!fieldMatchMemo.matches(i, regexIdsExpected[i], line.get(i))) {
 
-				matches = true;
+				lineNonMatching = lineNumber + " " + (i + 1) + " " + pattern.getLogInfos()[0]
+						+ pattern.getLogInfos()[2] + " " + pattern.getListRegexName().get(i) + " " + line.get(i);
 
+				nonMatching.add(lineNonMatching);
+				lineMatches = false;
 			}
 		}
-		return nbLinesMatching;
+		return lineMatches;
 	}
 
 	// compare all the lines of the logfile with all the patterns of listLogPatterns
 	public String compareAllLogPatterns(ListLogPatterns listLogPatterns, ListRegexp listRegexp, int startLine,
 			int finishLine) {
 
-		String result = "";
-		String patternMatching = "Pattern(s) matching : ";
-		int nbLinesMatching;
-
 		int nbLinesProcessed;
 
+		List<LogPattern> patterns = listLogPatterns.getListPatterns();
+
+		// counters and non-matching fields of each pattern, indexed by the position of the pattern
+		int[] nbLinesMatchingByPattern = new int[patterns.size()];
+		List<List<String>> nonMatchingByPattern = new ArrayList<List<String>>();
+
+		// results of the regex on the fields of the current line, shared by all the patterns
+		FieldMatchMemo fieldMatchMemo = new FieldMatchMemo(listRegexp);
+		fieldMatchMemo.setFieldValueCache(this.fieldValueCache);
+
 		// we consider that when startLine and finishLine are both equal to -1, then we
 		// have to analyse ALL the lines of the file
 		if (startLine == -1 && finishLine == -1) {
@@ -149,9 +183,158 @@ public class Logfile {
 			nbLinesProcessed = nbLinesProcessed - 1;
 		}
 
-		for (LogPattern pattern : listLogPatterns.getListPatterns()) {
+		for (int p = 0; p < patterns.size(); p++) {
+			nonMatchingByPattern.add(new ArrayList<String>());
+		}
+
+		// single pass : each line is compared with all the patterns having its number of fields
+		for (int l = startLine - 1; l < finishLine; l++) {
+
+			CSVRecord line = this.listLines.get(l);
+			fieldMatchMemo.newLine(line.size());
+
+			for (LogPattern pattern : listLogPatterns.getPatternsByNbFields(line.size())) {
+
+				if (this.compareLine(line, l + 1, pattern, fieldMatchMemo,
+						nonMatchingByPattern.get(pattern.getIndex()))) {
+					nbLinesMatchingByPattern[pattern.getIndex()]++;
+				}
+			}
+		}
+
+		// the non-matching fields are reported pattern by pattern, as before
+		for (LogPattern pattern : patterns) {
+			this.nonMatching.addAll(nonMatchingByPattern.get(pattern.getIndex()));
+		}
+
+		return this.results(patterns, nbLinesMatchingByPattern, nbLinesProcessed);
+	}
+
+	/*
+	 * same comparison as compareAllLogPatterns, without loading the file : the
+	 * records are read one by one and forgotten once compared, so the memory used
+	 * doesn't depend on the size of the file. The reading stops after finishLine.
+	 * The non-matching fields are not kept in the list nonMatching but written to
+	 * the CSV file as they are found, in the order of the lines
+	 */
+	public String compareAllLogPatternsStreaming(ListLogPatterns listLogPatterns, ListRegexp listRegexp,
+			char delimiter, int startLine, int finishLine) {
+
+		List<LogPattern> patterns = listLogPatterns.getListPatterns();
+		int[] nbLinesMatchingByPattern = new int[patterns.size()];
+		int nbLinesProcessed = 0;
+		long lineNumber;
+
+		// non-matching fields of the current line, written before the next line is read
+		List<String> lineNonMatching = new ArrayList<String>();
+
+		FieldMatchMemo fieldMatchMemo = new FieldMatchMemo(listRegexp);
+		fieldMatchMemo.setFieldValueCache(this.fieldValueCache);
+
+		// when startLine and finishLine are both equal to -1, we analyse ALL the lines of the file
+		if (startLine == -1 && finishLine == -1) {
+			startLine = 1;
+			finishLine = Integer.MAX_VALUE;
+		}
+
+		try {
+			Reader reader = Files.newBufferedReader(Paths.get(fileName));
+			CSVParser csvParser = null;
+
+			// the file is opened at the last record indexed before startLine (the index starts
+			// to help after its first STRIDE records)
+			if (startLine > LineOffsetIndex.STRIDE && this.lineOffsetIndex) {
+				csvParser = this.parserFromIndex(delimiter, startLine);
+			}
+			if (csvParser == null) {
+				csvParser = new CSVParser(reader, CSVFormat.DEFAULT.withDelimiter(delimiter));
+			} else {
+				reader.close();
+			}
+
+			CSVPrinter csvFilePrinter = new CSVPrinter(new FileWriter(NON_MATCHING_FILE + ".csv"),
+					CSVFormat.DEFAULT.withHeader(FILE_HEADER));
+
+			for (CSVRecord line : csvParser) {
+
+				lineNumber = line.getRecordNumber();
+
+				if (lineNumber > finishLine) {
+					break;
+				}
+
+				// the header line isn't analysed
+				if (lineNumber < startLine
+						|| (lineNumber == 1 && this.hasHeaderLine(line, listLogPatterns, listRegexp))) {
+					continue;
+				}
+
+				nbLinesProcessed++;
+				fieldMatchMemo.newLine(line.size());
+
+				for (LogPattern pattern : listLogPatterns.getPatternsByNbFields(line.size())) {
+
+					if (this.compareLine(line, (int) lineNumber, pattern, fieldMatchMemo, lineNonMatching)) {
+						nbLinesMatchingByPattern[pattern.getIndex()]++;
+					}
+				}
+
+				for (String record : lineNonMatching) {
+					this.printNonMatching(csvFilePrinter, record);
+				}
+				lineNonMatching.clear();
+			}
+
+			csvFilePrinter.close();
+			csvParser.close();
+
+		} catch (java.nio.file.NoSuchFileException e) {
+			System.out.print("File not found ! Please check your input (path) and re-enter it : ");
+		} catch (java.nio.file.AccessDeniedException e) {
+			System.out.print("File not found ! Please check your input (path) and re-enter it : ");
+		} catch (java.nio.file.InvalidPathException e) {
+			System.out.print("Invalid path ! Re-enter it : ");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		return this.results(patterns, nbLinesMatchingByPattern, nbLinesProcessed);
+	}
+
+	/*
+	 * returns a parser starting at the last record indexed before startLine (see
+	 * LineOffsetIndex), numbering the records as from the beginning of the file,
+	 * null if the index can't be built
+	 */
+	private CSVParser parserFromIndex(char delimiter, int startLine) throws IOException {
+
+		LineOffsetIndex index;
+
+		try {
+			index = LineOffsetIndex.open(fileName, delimiter, startLine);
+		} catch (IOException e) {
+			System.out.println("The index of the lines can't be saved, the file is read from its beginning");
+			return null;
+		}
+
+		FileChannel channel = FileChannel.open(Paths.get(fileName));
+		channel.position(index.byteOffsetBefore(startLine));
+
+		return new CSVParser(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1),
+				CSVFormat.DEFAULT.withDelimiter(delimiter), index.charOffsetBefore(startLine),
+				index.recordBefore(startLine));
+	}
 
-			nbLinesMatching = this.compareLogPattern(pattern, listRegexp, startLine, finishLine);
+	// the number of lines matching each pattern, after the patterns matching all the lines
+	private String results(List<LogPattern> patterns, int[] nbLinesMatchingByPattern, int nbLinesProcessed) {
+
+		String result = "";
+		String patternMatching = "Pattern(s) matching : ";
+		int nbLinesMatching;
+
+		for (LogPattern pattern : patterns) {
+
+			nbLinesMatching = nbLinesMatchingByPattern[pattern.getIndex()];
 
 			result = result + pattern.getLogInfos()[0] + " pattern" + pattern.getLogInfos()[2] + " : " + nbLinesMatching
 					+ " / " + nbLinesProcessed + "\n";
@@ -161,17 +344,11 @@ public class Logfile {
 			}
 		}
 
-		result = patternMatching + "\n\n" + result;
-
-		return result;
+		return patternMatching + "\n\n" + result;
 	}
 
 	public void recordNonMatchingLine() {
 
-		String file = "InfosNonMatchingLines";
-		// CSV file header
-		String[] FILE_HEADER = { "file name", "line", "column", "pattern expected", "field expected", "found" };
-
 		FileWriter fileWriter = null;
 		CSVPrinter csvFilePrinter = null;
 
@@ -181,19 +358,13 @@ public class Logfile {
 		try {
 			
 			// initialise FileWriter object
-			fileWriter = new FileWriter(file + ".csv");
+			fileWriter = new FileWriter(NON_MATCHING_FILE + ".csv");
 
 			// initialise CSVPrinter object
 			csvFilePrinter = new CSVPrinter(fileWriter, csvFileFormat);
 
 			for (String record : this.nonMatching) {
-
-				String[] field = record.split(" ", 5);
-				
-				List<String> data = Arrays.asList(this.fileName, field[0], field[1], field[2], field[3], field[4]);
-
-				// Write the recordNonMatching to the CSV file
-				csvFilePrinter.printRecord(data);
+				this.printNonMatching(csvFilePrinter, record);
 			}
 
 			System.out.println("Write CSV successfully!");
@@ -213,48 +384,48 @@ public class Logfile {
 		}
 	}
 
-	public boolean hasHeaderLine(ListLogPatterns listLogPatterns, ListRegexp listRegexp) {
-		// returns true if the first line is header line, else returns false
+	// write a non-matching field ("line column pattern regex found") in the CSV file
+	private void printNonMatching(CSVPrinter csvFilePrinter, String record) throws IOException {
 
-		boolean matches = true;
-		int nbPatternMatching = 0;
+		String[] field = record.split(" ", 5);
 
-		String regexNameExpected;
-		String regexDefExpected;
+		List<String> data = Arrays.asList(this.fileName, field[0], field[1], field[2], field[3], field[4]);
 
-		CSVRecord firstLine = this.listLines.get(0);
-		
-		System.out.println(firstLine);
+		// Write the recordNonMatching to the CSV file
+		csvFilePrinter.printRecord(data);
+	}
 
-		// for each pattern of the list
-		for (LogPattern pattern : listLogPatterns.getListPatterns()) {
+	public boolean hasHeaderLine(ListLogPatterns listLogPatterns, ListRegexp listRegexp) {
+		// returns true if the first line is header line, else returns false
+		return this.hasHeaderLine(this.listLines.get(0), listLogPatterns, listRegexp);
+	}
 
-			if (firstLine.size() == pattern.getListRegexName().size()) {
-				// for each field of the line
-				for (int i = 0; i < firstLine.size(); i++) {
+	// returns true if no pattern matches the line in parameter, read first in the file
+	public boolean hasHeaderLine(CSVRecord firstLine, ListLogPatterns listLogPatterns, ListRegexp listRegexp) {
 
-					if (matches && i < pattern.getListRegexName().size()) {
+		boolean matches = true;
+		int nbPatternMatching = 0;
 
-						// we get the regex we expect to match with from the current pattern
-						regexNameExpected = pattern.getListRegexName().get(i);
+		System.out.println(firstLine);
 
-						// we get the definition of the regex from its name
-						regexDefExpected = listRegexp.getDefinitionByName(regexNameExpected);
+		// for each pattern having the same number of fields than the line
+		for (LogPattern pattern : listLogPatterns.getPatternsByNbFields(firstLine.size())) {
 
-						// compare the current field of the line with the pattern's regex expected
-						matches = Pattern.matches(regexDefExpected, firstLine.get(i));
-					}
-				}
+			// for each field of the line
+			for (int i = 0; i < firstLine.size(); i++) {
 
 				if (matches) {
-					System.out.println(pattern.getLogInfos()[0] + pattern.getLogInfos()[2]);
-					nbPatternMatching++;
-				} else {
-					matches = true;
+
+					// compare the current field of the line with the regex expected by the current pattern
+					matches = listRegexp.matches(pattern.getRegexIds()[i], firstLine.get(i));
 				}
+			}
 
+			if (matches) {
+				System.out.println(pattern.getLogInfos()[0] + pattern.getLogInfos()[2]);
+				nbPatternMatching++;
 			} else {
-				matches = false;
+				matches = true;
 			}
 		}
 		